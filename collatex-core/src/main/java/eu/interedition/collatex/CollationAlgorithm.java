@@ -29,6 +29,7 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
@@ -43,7 +44,13 @@ public interface CollationAlgorithm {
 
     abstract class Base implements CollationAlgorithm {
         protected final Logger LOG = Logger.getLogger(getClass().getName());
-        protected Map<Token, VariantGraph.Vertex> witnessTokenVertices;
+
+        /**
+         * The vertices the tokens of the last merged witness have been aligned with; a read-only view of
+         * {@link #witnessTokenVertexArray()}, which indexes the tokens on the first lookup.
+         */
+        protected Map<Token, VariantGraph.Vertex> witnessTokenVertices = Collections.emptyMap();
+        private VariantGraph.Vertex[] witnessTokenVertexArray = new VariantGraph.Vertex[0];
 
         @Override
         public void collate(VariantGraph against, Iterable<Token>... witnesses) {
@@ -64,33 +71,55 @@ public interface CollationAlgorithm {
         }
 
         protected void merge(VariantGraph into, Iterable<Token> witnessTokens, Map<Token, VariantGraph.Vertex> alignments) {
-            final Witness witness = StreamUtil.stream(witnessTokens)
-                    .findFirst()
-                    .map(Token::getWitness)
-                    .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
+            final Token[] tokens = StreamUtil.stream(witnessTokens).toArray(Token[]::new);
+            final VariantGraph.Vertex[] aligned = new VariantGraph.Vertex[tokens.length];
+            if (!alignments.isEmpty()) {
+                for (int tc = 0; tc < tokens.length; tc++) {
+                    aligned[tc] = alignments.get(tokens[tc]);
+                }
+            }
+            merge(into, tokens, aligned);
+        }
+
+        /**
+         * Merges a witness into the graph in a single pass.
+         *
+         * @param tokens  the tokens of the witness
+         * @param aligned the vertices the tokens have been aligned with, indexed by token position; unaligned positions
+         *                are <code>null</code> and get filled in with new vertices
+         */
+        protected void merge(VariantGraph into, Token[] tokens, VariantGraph.Vertex[] aligned) {
+            if (tokens.length == 0) {
+                throw new IllegalArgumentException("Empty witness");
+            }
+            final Witness witness = tokens[0].getWitness();
 
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.log(Level.FINE, "{0} + {1}: Merge comparand into graph", new Object[]{into, witness});
             }
-            witnessTokenVertices = new HashMap<>();
-            VariantGraph.Vertex last = into.getStart();
-            final Set<Witness> witnessSet = Collections.singleton(witness);
-            for (Token token : witnessTokens) {
-                VariantGraph.Vertex matchingVertex = alignments.get(token);
+            for (int tc = 0; tc < tokens.length; tc++) {
+                final Token token = tokens[tc];
+                final VariantGraph.Vertex matchingVertex = aligned[tc];
                 if (matchingVertex == null) {
-                    matchingVertex = into.add(token);
+                    aligned[tc] = into.add(token);
                 } else {
                     if (LOG.isLoggable(Level.FINE)) {
                         LOG.log(Level.FINE, "Match: {0} to {1}", new Object[]{matchingVertex, token});
                     }
                     matchingVertex.add(Collections.singleton(token));
                 }
-                witnessTokenVertices.put(token, matchingVertex);
-
-                into.connect(last, matchingVertex, witnessSet);
-                last = matchingVertex;
             }
-            into.connect(last, into.getEnd(), witnessSet);
+            into.append(witness, aligned);
+
+            witnessTokenVertexArray = aligned;
+            witnessTokenVertices = new TokenVertexMap(tokens, aligned);
+        }
+
+        /**
+         * @return the vertices the tokens of the last merged witness have been aligned with, indexed by token position
+         */
+        protected VariantGraph.Vertex[] witnessTokenVertexArray() {
+            return witnessTokenVertexArray;
         }
 
         protected void mergeTranspositions(VariantGraph into, Iterable<SortedSet<VertexMatch.WithToken>> transpositions) {
@@ -133,19 +162,77 @@ public interface CollationAlgorithm {
                     new MatchPhraseAlignmentScorer(Math.max(tokens.length, vertices.length))
             ).keySet();
 
-            final Map<Token, VariantGraph.Vertex> alignments = matches.stream()
+            final VariantGraph.Vertex[] alignments = new VariantGraph.Vertex[tokens.length];
+            matches.stream()
                     .filter(alignedMatches::contains)
                     .flatMap(Set::stream)
-                    .collect(Collectors.toMap(m -> tokens[m.token], m -> m.vertex));
+                    .forEach(m -> alignments[m.token] = m.vertex);
 
             final List<SortedSet<VertexMatch.WithToken>> transpositions = matches.stream()
                     .filter(m -> !alignedMatches.contains(m))
                     .map(t -> t.stream().map(m -> new VertexMatch.WithToken(m.vertex, m.vertexRank, tokens[m.token])).collect(Collectors.toCollection(TreeSet::new)))
                     .collect(Collectors.toList());
 
-            merge(graph, Arrays.asList(tokens), alignments);
+            merge(graph, tokens, alignments);
             mergeTranspositions(graph, transpositions);
         }
+
+        /**
+         * Maps tokens to the vertices they have been aligned with, given both by position.
+         */
+        private static class TokenVertexMap extends AbstractMap<Token, VariantGraph.Vertex> {
+            private final Token[] tokens;
+            private final VariantGraph.Vertex[] vertices;
+            private Map<Token, Integer> positions;
+
+            private TokenVertexMap(Token[] tokens, VariantGraph.Vertex[] vertices) {
+                this.tokens = tokens;
+                this.vertices = vertices;
+            }
+
+            @Override
+            public VariantGraph.Vertex get(Object key) {
+                final Integer position = positions().get(key);
+                return (position == null ? null : vertices[position]);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return positions().containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return tokens.length;
+            }
+
+            @Override
+            public Set<Entry<Token, VariantGraph.Vertex>> entrySet() {
+                return new AbstractSet<Entry<Token, VariantGraph.Vertex>>() {
+                    @Override
+                    public Iterator<Entry<Token, VariantGraph.Vertex>> iterator() {
+                        return IntStream.range(0, tokens.length)
+                                .mapToObj(tc -> (Entry<Token, VariantGraph.Vertex>) new SimpleImmutableEntry<>(tokens[tc], vertices[tc]))
+                                .iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return tokens.length;
+                    }
+                };
+            }
+
+            private Map<Token, Integer> positions() {
+                if (positions == null) {
+                    positions = new HashMap<>();
+                    for (int tc = 0; tc < tokens.length; tc++) {
+                        positions.put(tokens[tc], tc);
+                    }
+                }
+                return positions;
+            }
+        }
     }
 
     class MatchPhraseAlignmentScorer implements NeedlemanWunschScorer<SortedSet<VertexMatch.WithTokenIndex>, SortedSet<VertexMatch.WithTokenIndex>> {
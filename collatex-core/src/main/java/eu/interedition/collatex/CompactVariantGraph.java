@@ -0,0 +1,646 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.util.VariantGraphTraversal;
+import eu.interedition.collatex.util.WitnessSet;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A variant graph keeping its structure in primitive arrays instead of per-vertex collections.
+ * <p>
+ * Vertices are numbered densely and are represented by lightweight views which read their edges and tokens from the
+ * arrays of the graph. While the graph is being built, edges and tokens are kept in growable arrays, chained per
+ * vertex. {@link #freeze() Freezing} the graph renumbers the remaining vertices and lays out edges in
+ * compressed-sparse-row form and the tokens of each vertex as a contiguous range, after which the graph can no longer be
+ * modified.
+ * <p>
+ * The views implement the regular {@link VariantGraph.Vertex} API, so that traversals, rankings and serializers work on
+ * this graph unchanged. Witness sets labelling edges are shared between all edges with the same witnesses.
+ */
+public class CompactVariantGraph extends VariantGraph {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<WitnessSet, WitnessSet> labels = new HashMap<>();
+
+    private Vertex[] vertices;
+    private int vertexCount;
+
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private WitnessSet[] edgeLabel;
+    private int edgeCount;
+
+    // growable chains of edges and tokens per vertex, dropped when frozen
+    private int[] outHead;
+    private int[] inHead;
+    private int[] outNext;
+    private int[] inNext;
+    private int[] outDegree;
+    private int[] inDegree;
+
+    private Token[] tokens;
+    private int[] tokenNext;
+    private int[] tokenHead;
+    private int[] tokenTail;
+    private int[] tokenSize;
+    private int tokenCount;
+
+    // compressed-sparse-row layout, built when frozen
+    private int[] outOffsets;
+    private int[] inOffsets;
+    private int[] inEdges;
+    private int[] tokenOffsets;
+
+    public CompactVariantGraph() {
+        super(graph -> new Vertex(graph, graph.start == null ? 0 : 1));
+
+        this.vertices = new Vertex[INITIAL_CAPACITY];
+        this.outHead = new int[INITIAL_CAPACITY];
+        this.inHead = new int[INITIAL_CAPACITY];
+        this.outDegree = new int[INITIAL_CAPACITY];
+        this.inDegree = new int[INITIAL_CAPACITY];
+        this.tokenHead = new int[INITIAL_CAPACITY];
+        this.tokenTail = new int[INITIAL_CAPACITY];
+        this.tokenSize = new int[INITIAL_CAPACITY];
+
+        this.edgeFrom = new int[INITIAL_CAPACITY];
+        this.edgeTo = new int[INITIAL_CAPACITY];
+        this.edgeLabel = new WitnessSet[INITIAL_CAPACITY];
+        this.outNext = new int[INITIAL_CAPACITY];
+        this.inNext = new int[INITIAL_CAPACITY];
+
+        this.tokens = new Token[INITIAL_CAPACITY];
+        this.tokenNext = new int[INITIAL_CAPACITY];
+
+        register((Vertex) start);
+        register((Vertex) end);
+        addEdge(0, 1, witnessRegistry.empty());
+    }
+
+    /**
+     * Copies the vertices, edges, tokens and transpositions of the given graph into a new compact graph.
+     */
+    public static CompactVariantGraph copyOf(VariantGraph graph) {
+        final CompactVariantGraph copy = new CompactVariantGraph();
+        copy.removeEdge(0);
+
+        final Map<VariantGraph.Vertex, Vertex> copies = new HashMap<>();
+        copies.put(graph.getStart(), (Vertex) copy.getStart());
+        copies.put(graph.getEnd(), (Vertex) copy.getEnd());
+        for (VariantGraph.Vertex vertex : graph.vertices()) {
+            final Vertex vertexCopy = copies.computeIfAbsent(vertex, v -> copy.register(new Vertex(copy, copy.vertexCount)));
+            vertexCopy.add(vertex.tokens());
+            for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : vertex.outgoing().entrySet()) {
+                final Vertex to = copies.computeIfAbsent(edge.getKey(), v -> copy.register(new Vertex(copy, copy.vertexCount)));
+                copy.addEdge(vertexCopy.id, to.id, edge.getValue());
+            }
+        }
+        for (Set<VariantGraph.Vertex> transposition : graph.transpositions()) {
+            final Set<VariantGraph.Vertex> transposed = new HashSet<>();
+            transposition.forEach(v -> transposed.add(copies.get(v)));
+            copy.transpose(transposed);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return outOffsets != null;
+    }
+
+    /**
+     * Drops the vertices removed by joins, renumbers the remaining ones in topological order and switches to the
+     * compressed-sparse-row layout. The topological order, the ranking and the witness sets of the graph and its
+     * vertices are computed up front, so that the frozen graph can be read from multiple threads. Subsequent
+     * modifications of the graph result in an {@link IllegalStateException}.
+     *
+     * @return this graph
+     */
+    @Override
+    public CompactVariantGraph freeze() {
+        if (isFrozen()) {
+            return this;
+        }
+
+        // renumber live vertices in topological order, followed by unreachable ones
+        final int[] ids = new int[vertexCount];
+        Arrays.fill(ids, NONE);
+        final int[] byId = new int[vertexCount];
+        int live = 0;
+        for (VariantGraph.Vertex vertex : VariantGraphTraversal.sort(this, null)) {
+            final int v = ((Vertex) vertex).id;
+            byId[live] = v;
+            ids[v] = live++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            if (vertices[v] != null && ids[v] == NONE) {
+                byId[live] = v;
+                ids[v] = live++;
+            }
+        }
+
+        // edges, keeping the order in which they are chained per vertex
+        final int[] edgeIds = new int[edgeCount];
+        final int[] newEdgeFrom = new int[edgeCount];
+        final int[] newEdgeTo = new int[edgeCount];
+        final WitnessSet[] newEdgeLabel = new WitnessSet[edgeCount];
+        final int[] newOutOffsets = new int[live + 1];
+        int liveEdges = 0;
+        for (int id = 0; id < live; id++) {
+            for (int e = outHead[byId[id]]; e != NONE; e = outNext[e]) {
+                edgeIds[e] = liveEdges;
+                newEdgeFrom[liveEdges] = id;
+                newEdgeTo[liveEdges] = ids[edgeTo[e]];
+                newEdgeLabel[liveEdges] = edgeLabel[e];
+                liveEdges++;
+            }
+            newOutOffsets[id + 1] = liveEdges;
+        }
+        final int[] newInOffsets = new int[live + 1];
+        final int[] newInEdges = new int[liveEdges];
+        int inEdge = 0;
+        for (int id = 0; id < live; id++) {
+            for (int e = inHead[byId[id]]; e != NONE; e = inNext[e]) {
+                newInEdges[inEdge++] = edgeIds[e];
+            }
+            newInOffsets[id + 1] = inEdge;
+        }
+
+        // tokens, contiguous per vertex
+        final int[] newTokenOffsets = new int[live + 1];
+        final Token[] newTokens = new Token[tokenCount];
+        int tc = 0;
+        for (int id = 0; id < live; id++) {
+            newTokenOffsets[id] = tc;
+            for (int t = tokenHead[byId[id]]; t != NONE; t = tokenNext[t]) {
+                newTokens[tc++] = tokens[t];
+            }
+        }
+        newTokenOffsets[live] = tc;
+
+        final Vertex[] newVertices = new Vertex[live];
+        for (int id = 0; id < live; id++) {
+            newVertices[id] = vertices[byId[id]];
+            newVertices[id].id = id;
+        }
+
+        this.vertices = newVertices;
+        this.vertexCount = live;
+        this.edgeFrom = Arrays.copyOf(newEdgeFrom, liveEdges);
+        this.edgeTo = Arrays.copyOf(newEdgeTo, liveEdges);
+        this.edgeLabel = Arrays.copyOf(newEdgeLabel, liveEdges);
+        this.edgeCount = liveEdges;
+        this.outOffsets = newOutOffsets;
+        this.inOffsets = newInOffsets;
+        this.inEdges = newInEdges;
+        this.tokens = newTokens;
+        this.tokenCount = tc;
+        this.tokenOffsets = newTokenOffsets;
+
+        this.outHead = this.inHead = this.outNext = this.inNext = this.outDegree = this.inDegree = null;
+        this.tokenNext = this.tokenHead = this.tokenTail = this.tokenSize = null;
+        this.labels.clear();
+
+        precompute();
+        return this;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public VariantGraph.Vertex add(Token token) {
+        checkMutable();
+        final Vertex vertex = register(new Vertex(this, vertexCount));
+        addToken(vertex.id, token);
+        added(vertex);
+        return vertex;
+    }
+
+    @Override
+    public void connect(VariantGraph.Vertex from, VariantGraph.Vertex to, Set<Witness> witnesses) {
+        if (from.equals(to)) {
+            throw new IllegalArgumentException();
+        }
+        checkMutable();
+
+        link(from, to, label(witnesses));
+
+        // the initial edge between start and end vertex
+        if (edgeFrom[0] != NONE) {
+            removeEdge(0);
+        }
+    }
+
+    @Override
+    public void append(Witness witness, VariantGraph.Vertex[] path) {
+        checkMutable();
+        if (edgeFrom[0] != NONE) {
+            removeEdge(0);
+        }
+
+        final WitnessSet label = label(Collections.singleton(witness));
+        VariantGraph.Vertex last = start;
+        for (VariantGraph.Vertex vertex : path) {
+            link(last, vertex, label);
+            last = vertex;
+        }
+        link(last, end, label);
+    }
+
+    private void link(VariantGraph.Vertex from, VariantGraph.Vertex to, WitnessSet label) {
+        final int fromId = id(from);
+        final int toId = id(to);
+        if (fromId == toId) {
+            throw new IllegalArgumentException();
+        }
+        int edge = outHead[fromId];
+        while (edge != NONE && edgeTo[edge] != toId) {
+            edge = outNext[edge];
+        }
+        if (edge == NONE) {
+            addEdge(fromId, toId, label);
+        } else {
+            edgeLabel[edge] = label(edgeLabel[edge].union(label));
+        }
+        connected(from, to);
+    }
+
+    @Override
+    public Set<VariantGraph.Vertex> transpose(Set<VariantGraph.Vertex> vertices) {
+        checkMutable();
+        return super.transpose(vertices);
+    }
+
+    @Override
+    void join(VariantGraph.Vertex head, List<VariantGraph.Vertex> joined) {
+        checkMutable();
+        final int v = id(head);
+
+        int tail = v;
+        for (VariantGraph.Vertex vertex : joined) {
+            tail = id(vertex);
+
+            // tokens
+            if (tokenHead[tail] != NONE) {
+                if (tokenHead[v] == NONE) {
+                    tokenHead[v] = tokenHead[tail];
+                } else {
+                    tokenNext[tokenTail[v]] = tokenHead[tail];
+                }
+                tokenTail[v] = tokenTail[tail];
+                tokenSize[v] += tokenSize[tail];
+            }
+
+            // the edge from its predecessor in the chain
+            for (int e = inHead[tail]; e != NONE; e = inHead[tail]) {
+                removeEdge(e);
+            }
+            vertices[tail] = null;
+        }
+
+        // outgoing edges of the last joined vertex now start at the head of the chain
+        for (int e = outHead[tail]; e != NONE; e = outNext[e]) {
+            edgeFrom[e] = v;
+        }
+        outHead[v] = outHead[tail];
+        outDegree[v] = outDegree[tail];
+        outHead[tail] = NONE;
+        outDegree[tail] = 0;
+    }
+
+    private Vertex register(Vertex vertex) {
+        final int id = vertexCount++;
+        if (id == vertices.length) {
+            final int capacity = grow(vertices.length);
+            vertices = Arrays.copyOf(vertices, capacity);
+            outHead = Arrays.copyOf(outHead, capacity);
+            inHead = Arrays.copyOf(inHead, capacity);
+            outDegree = Arrays.copyOf(outDegree, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+            tokenHead = Arrays.copyOf(tokenHead, capacity);
+            tokenTail = Arrays.copyOf(tokenTail, capacity);
+            tokenSize = Arrays.copyOf(tokenSize, capacity);
+        }
+        vertices[id] = vertex;
+        outHead[id] = inHead[id] = tokenHead[id] = tokenTail[id] = NONE;
+        return vertex;
+    }
+
+    private void addEdge(int from, int to, Set<Witness> witnesses) {
+        final int edge = edgeCount++;
+        if (edge == edgeFrom.length) {
+            final int capacity = grow(edgeFrom.length);
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeLabel = Arrays.copyOf(edgeLabel, capacity);
+            outNext = Arrays.copyOf(outNext, capacity);
+            inNext = Arrays.copyOf(inNext, capacity);
+        }
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        edgeLabel[edge] = label(witnesses);
+        outNext[edge] = outHead[from];
+        outHead[from] = edge;
+        outDegree[from]++;
+        inNext[edge] = inHead[to];
+        inHead[to] = edge;
+        inDegree[to]++;
+    }
+
+    private void removeEdge(int edge) {
+        final int from = edgeFrom[edge];
+        final int to = edgeTo[edge];
+        outHead[from] = unlink(outHead[from], edge, outNext);
+        outDegree[from]--;
+        inHead[to] = unlink(inHead[to], edge, inNext);
+        inDegree[to]--;
+        edgeFrom[edge] = NONE;
+        edgeTo[edge] = NONE;
+        edgeLabel[edge] = null;
+    }
+
+    private static int unlink(int head, int edge, int[] next) {
+        if (head == edge) {
+            return next[edge];
+        }
+        for (int e = head; e != NONE; e = next[e]) {
+            if (next[e] == edge) {
+                next[e] = next[edge];
+                break;
+            }
+        }
+        return head;
+    }
+
+    private void addToken(int vertex, Token token) {
+        final int t = tokenCount++;
+        if (t == tokens.length) {
+            final int capacity = grow(tokens.length);
+            tokens = Arrays.copyOf(tokens, capacity);
+            tokenNext = Arrays.copyOf(tokenNext, capacity);
+        }
+        tokens[t] = token;
+        tokenNext[t] = NONE;
+        if (tokenHead[vertex] == NONE) {
+            tokenHead[vertex] = t;
+        } else {
+            tokenNext[tokenTail[vertex]] = t;
+        }
+        tokenTail[vertex] = t;
+        tokenSize[vertex]++;
+    }
+
+    private WitnessSet label(Set<Witness> witnesses) {
+        final WitnessSet label = witnessRegistry.of(witnesses);
+        final WitnessSet interned = labels.putIfAbsent(label, label);
+        return (interned == null ? label : interned);
+    }
+
+    private int id(VariantGraph.Vertex vertex) {
+        if (vertex.graph() != this) {
+            throw new IllegalArgumentException(String.valueOf(vertex));
+        }
+        return ((Vertex) vertex).id;
+    }
+
+    private void checkMutable() {
+        if (isFrozen()) {
+            throw new IllegalStateException("Graph is frozen");
+        }
+    }
+
+    private static int grow(int capacity) {
+        return capacity + (capacity >> 1) + 1;
+    }
+
+    /**
+     * Iterates over the edges of a vertex, either by following the per-vertex chain or by scanning the vertex's row in
+     * the compressed-sparse-row layout. Frozen edges are numbered in the order of their source vertices, so outgoing
+     * rows are ranges of edge numbers themselves, while incoming rows are looked up.
+     */
+    private class EdgeIterator implements Iterator<Map.Entry<VariantGraph.Vertex, Set<Witness>>> {
+        private final int[] endpoint;
+        private final int[] next;
+        private final int[] row;
+        private int edge;
+        private int position;
+        private final int limit;
+
+        EdgeIterator(int vertex, boolean outgoing) {
+            this.endpoint = (outgoing ? edgeTo : edgeFrom);
+            if (isFrozen()) {
+                this.next = null;
+                this.row = (outgoing ? null : inEdges);
+                final int[] offsets = (outgoing ? outOffsets : inOffsets);
+                this.position = offsets[vertex];
+                this.limit = offsets[vertex + 1];
+                this.edge = edgeAt(position);
+            } else {
+                this.next = (outgoing ? outNext : inNext);
+                this.row = null;
+                this.limit = 0;
+                this.edge = (outgoing ? outHead : inHead)[vertex];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return edge != NONE;
+        }
+
+        @Override
+        public Map.Entry<VariantGraph.Vertex, Set<Witness>> next() {
+            if (edge == NONE) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<VariantGraph.Vertex, Set<Witness>> entry = new AbstractMap.SimpleImmutableEntry<>(vertices[endpoint[edge]], edgeLabel[edge]);
+            if (next == null) {
+                edge = edgeAt(++position);
+            } else {
+                edge = next[edge];
+            }
+            return entry;
+        }
+
+        private int edgeAt(int position) {
+            if (position >= limit) {
+                return NONE;
+            }
+            return (row == null ? position : row[position]);
+        }
+    }
+
+    /**
+     * Read-only map view of the incoming or outgoing edges of a vertex.
+     */
+    private class EdgeMap extends AbstractMap<VariantGraph.Vertex, Set<Witness>> {
+        private final int vertex;
+        private final boolean outgoing;
+
+        EdgeMap(int vertex, boolean outgoing) {
+            this.vertex = vertex;
+            this.outgoing = outgoing;
+        }
+
+        @Override
+        public Set<Witness> get(Object key) {
+            if (!(key instanceof Vertex) || ((Vertex) key).graph() != CompactVariantGraph.this) {
+                return null;
+            }
+            final int other = ((Vertex) key).id;
+            for (Iterator<Map.Entry<VariantGraph.Vertex, Set<Witness>>> it = new EdgeIterator(vertex, outgoing); it.hasNext(); ) {
+                final Map.Entry<VariantGraph.Vertex, Set<Witness>> edge = it.next();
+                if (((Vertex) edge.getKey()).id == other) {
+                    return edge.getValue();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<VariantGraph.Vertex, Set<Witness>>> entrySet() {
+            return new AbstractSet<Entry<VariantGraph.Vertex, Set<Witness>>>() {
+                @Override
+                public Iterator<Entry<VariantGraph.Vertex, Set<Witness>>> iterator() {
+                    return new EdgeIterator(vertex, outgoing);
+                }
+
+                @Override
+                public int size() {
+                    return degree(vertex, outgoing);
+                }
+            };
+        }
+    }
+
+    private int degree(int vertex, boolean outgoing) {
+        if (isFrozen()) {
+            final int[] offsets = (outgoing ? outOffsets : inOffsets);
+            return offsets[vertex + 1] - offsets[vertex];
+        }
+        return (outgoing ? outDegree : inDegree)[vertex];
+    }
+
+    /**
+     * Read-only set view of the tokens of a vertex.
+     */
+    private class TokenSet extends AbstractSet<Token> {
+        private final int vertex;
+
+        TokenSet(int vertex) {
+            this.vertex = vertex;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            if (isFrozen()) {
+                return Arrays.asList(tokens).subList(tokenOffsets[vertex], tokenOffsets[vertex + 1]).iterator();
+            }
+            return new Iterator<Token>() {
+                private int token = tokenHead[vertex];
+
+                @Override
+                public boolean hasNext() {
+                    return token != NONE;
+                }
+
+                @Override
+                public Token next() {
+                    if (token == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    final Token next = tokens[token];
+                    token = tokenNext[token];
+                    return next;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (isFrozen() ? tokenOffsets[vertex + 1] - tokenOffsets[vertex] : tokenSize[vertex]);
+        }
+    }
+
+    /**
+     * A vertex identified by its position in the arrays of the graph.
+     */
+    public static class Vertex extends VariantGraph.Vertex {
+        private int id;
+
+        Vertex(VariantGraph graph, int id) {
+            super(graph, null, null, null);
+            this.id = id;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        private CompactVariantGraph compactGraph() {
+            return (CompactVariantGraph) graph();
+        }
+
+        @Override
+        public Map<VariantGraph.Vertex, Set<Witness>> incoming() {
+            return compactGraph().new EdgeMap(id, false);
+        }
+
+        @Override
+        public Map<VariantGraph.Vertex, Set<Witness>> outgoing() {
+            return compactGraph().new EdgeMap(id, true);
+        }
+
+        @Override
+        public Set<Token> tokens() {
+            return compactGraph().new TokenSet(id);
+        }
+
+        @Override
+        public void add(Iterable<Token> tokens) {
+            final CompactVariantGraph graph = compactGraph();
+            graph.checkMutable();
+            for (Token token : tokens) {
+                graph.addToken(id, token);
+            }
+        }
+    }
+}
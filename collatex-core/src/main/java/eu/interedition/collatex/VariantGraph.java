@@ -19,19 +19,26 @@
 
 package eu.interedition.collatex;
 
+import eu.interedition.collatex.util.VariantGraphRanking;
 import eu.interedition.collatex.util.VariantGraphTraversal;
+import eu.interedition.collatex.util.WitnessRegistry;
+import eu.interedition.collatex.util.WitnessSet;
 
-import java.util.ArrayDeque;
-import java.util.Collection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Deque;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
@@ -39,15 +46,30 @@ import java.util.stream.Collectors;
 public class VariantGraph {
     final VariantGraph.Vertex start;
     final VariantGraph.Vertex end;
-    final Map<Vertex, Set<Set<Vertex>>> transpositionIndex = new HashMap<>();
+    final List<Transposition> transpositions = new ArrayList<>();
+    private final Map<TranspositionKey, Transposition> transpositionsByKey = new HashMap<>();
+    private int transpositionCount;
+    private int vertexSerial;
+    final WitnessRegistry witnessRegistry = new WitnessRegistry();
+    private WitnessSet witnesses;
+    private VariantGraphRanking ranking;
+    private List<Vertex> order;
 
     public VariantGraph() {
-        super();
-        this.start = new VariantGraph.Vertex(this);
-        this.end = new VariantGraph.Vertex(this);
+        this(VariantGraph.Vertex::new);
 
-        this.start.outgoing.put(this.end, Collections.emptySet());
-        this.end.incoming.put(this.start, Collections.emptySet());
+        this.start.outgoing.put(this.end, witnessRegistry.empty());
+        this.end.incoming.put(this.start, witnessRegistry.empty());
+    }
+
+    /**
+     * Lets subclasses supply their own vertex representation. The factory is called twice, first for the start and
+     * then for the end vertex; connecting both is left to the subclass.
+     */
+    protected VariantGraph(Function<VariantGraph, Vertex> vertexFactory) {
+        super();
+        this.start = vertexFactory.apply(this);
+        this.end = vertexFactory.apply(this);
     }
 
     public Vertex getStart() {
@@ -58,17 +80,79 @@ public class VariantGraph {
         return end;
     }
 
+    public WitnessRegistry witnessRegistry() {
+        return witnessRegistry;
+    }
+
+    /**
+     * @return a read-only view of all transpositions of this graph, in the order in which they have been created
+     */
     public Set<Set<Vertex>> transpositions() {
-        return transpositionIndex.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        return new AbstractSet<Set<Vertex>>() {
+            @Override
+            public Iterator<Set<Vertex>> iterator() {
+                return transpositions.stream().filter(Objects::nonNull).<Set<Vertex>>map(t -> t).iterator();
+            }
+
+            @Override
+            public int size() {
+                return transpositionCount;
+            }
+        };
     }
 
+    /**
+     * @return the vertices of this graph in topological order, which is computed once and cached until the graph is
+     * modified
+     */
     public Iterable<Vertex> vertices() {
-        return VariantGraphTraversal.of(this);
+        if (order == null) {
+            order = Collections.unmodifiableList(VariantGraphTraversal.sort(this, null));
+        }
+        return order;
+    }
+
+    /**
+     * Ranks the vertices of this graph once and keeps the ranking up to date as edges are added, so that collation
+     * algorithms do not have to re-rank the graph for every witness. Joining vertices discards the ranking.
+     */
+    public VariantGraphRanking ranking() {
+        if (ranking == null) {
+            ranking = VariantGraphRanking.compute(this);
+        }
+        return ranking;
+    }
+
+    /**
+     * Creates an immutable, array-backed snapshot of this graph, whose ranking, topological order, vertex ids and
+     * witness sets are computed up front. The snapshot can be read and serialized from multiple threads concurrently;
+     * this graph itself is left unchanged.
+     *
+     * @see CompactVariantGraph#freeze()
+     */
+    public VariantGraph freeze() {
+        return CompactVariantGraph.copyOf(this).freeze();
+    }
+
+    public boolean isFrozen() {
+        return false;
+    }
+
+    /**
+     * Computes all lazily cached properties of this graph and its vertices, so that subsequent reads do not modify it.
+     */
+    void precompute() {
+        witnesses();
+        ranking();
+        for (Vertex vertex : vertices()) {
+            vertex.witnesses();
+        }
     }
 
     public Vertex add(Token token) {
         final VariantGraph.Vertex vertex = new VariantGraph.Vertex(this);
         vertex.tokens.add(token);
+        added(vertex);
         return vertex;
     }
 
@@ -77,34 +161,134 @@ public class VariantGraph {
             throw new IllegalArgumentException();
         }
 
-        witnesses = new HashSet<>(witnesses);
-        Optional.ofNullable(from.outgoing.remove(to)).ifPresent(witnesses::addAll);
+        link(from, to, witnessRegistry.of(witnesses));
 
-        from.outgoing.put(to, witnesses);
-        to.incoming.put(from, witnesses);
+        start.outgoing.remove(end);
+        end.incoming.remove(start);
+    }
 
+    /**
+     * Connects the start vertex, the given vertices in order and the end vertex by a path of the given witness.
+     * <p>
+     * Equivalent to connecting each pair of consecutive vertices, but all new edges share a single witness label, so
+     * that a witness of any length is merged in one pass without allocating per token.
+     */
+    public void append(Witness witness, Vertex[] path) {
         start.outgoing.remove(end);
         end.incoming.remove(start);
+
+        final WitnessSet label = witnessRegistry.of(Collections.singleton(witness));
+        Vertex last = start;
+        for (Vertex vertex : path) {
+            link(last, vertex, label);
+            last = vertex;
+        }
+        link(last, end, label);
+    }
+
+    private void link(Vertex from, Vertex to, WitnessSet label) {
+        if (from.equals(to)) {
+            throw new IllegalArgumentException();
+        }
+        final Set<Witness> existing = from.outgoing.get(to);
+        if (existing != null) {
+            label = witnessRegistry.of(existing).union(label);
+        }
+
+        from.outgoing.put(to, label);
+        to.incoming.put(from, label);
+
+        connected(from, to);
+    }
+
+    /**
+     * Drops the cached topological order once a vertex has been added.
+     */
+    void added(Vertex vertex) {
+        order = null;
     }
 
+    /**
+     * Drops the cached topological order and witness sets affected by a new or extended edge between the given
+     * vertices and updates the ranking.
+     */
+    void connected(Vertex from, Vertex to) {
+        order = null;
+        if (from.equals(start)) {
+            witnesses = null;
+        }
+        to.witnesses = null;
+        if (ranking != null) {
+            ranking.connected(from, to);
+        }
+    }
+
+    /**
+     * Marks the given vertices as transposed in relation to each other.
+     *
+     * @return the interned transposition of these vertices, which is only created if it does not exist yet
+     */
     public Set<Vertex> transpose(Set<Vertex> vertices) {
         if (vertices.isEmpty()) {
             throw new IllegalArgumentException();
         }
-        for (Set<Vertex> transposition : vertices.iterator().next().transpositions()) {
-            if (transposition.equals(vertices)) {
-                return transposition;
-            }
+        final Vertex[] sorted = vertices.toArray(new Vertex[vertices.size()]);
+        Arrays.sort(sorted, Comparator.comparingInt(v -> v.serial));
+        final int[] serials = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            serials[i] = sorted[i].serial;
         }
-        final Set<Vertex> t = new HashSet<>(vertices);
-        for (VariantGraph.Vertex vertex : t) {
-            transpositionIndex.computeIfAbsent(vertex, v -> new HashSet<>()).add(t);
+
+        final TranspositionKey key = new TranspositionKey(serials);
+        final Transposition existing = transpositionsByKey.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final Transposition t = new Transposition(transpositions.size(), sorted, serials);
+        transpositions.add(t);
+        transpositionsByKey.put(key, t);
+        transpositionCount++;
+        for (Vertex vertex : sorted) {
+            vertex.transpositions = Arrays.copyOf(vertex.transpositions, vertex.transpositions.length + 1);
+            vertex.transpositions[vertex.transpositions.length - 1] = t.id;
         }
         return t;
     }
 
+    void removeTransposition(Transposition t) {
+        transpositions.set(t.id, null);
+        transpositionsByKey.remove(new TranspositionKey(t.serials));
+        transpositionCount--;
+        for (Vertex vertex : t.vertices) {
+            final int[] ids = vertex.transpositions;
+            final int index = Arrays.binarySearch(ids, t.id);
+            final int[] remaining = Arrays.copyOf(ids, ids.length - 1);
+            System.arraycopy(ids, index + 1, remaining, index, remaining.length - index);
+            vertex.transpositions = remaining;
+        }
+    }
+
     public Set<Witness> witnesses() {
-        return start.outgoing().values().stream().flatMap(Collection::stream).collect(Collectors.toSet());
+        if (witnesses == null) {
+            witnesses = witnessRegistry.union(start.outgoing().values());
+        }
+        return witnesses;
+    }
+
+    /**
+     * Merges a chain of vertices into its head: the head takes over the tokens of the joined vertices and the outgoing
+     * edges of the last one, whereby the joined vertices are removed from the graph.
+     */
+    void join(Vertex head, List<Vertex> joined) {
+        final Vertex tail = joined.get(joined.size() - 1);
+        for (Vertex vertex : joined) {
+            head.add(vertex.tokens());
+        }
+
+        head.outgoing.clear();
+        head.outgoing.putAll(tail.outgoing);
+
+        head.outgoing.keySet().forEach(v -> v.incoming.put(head, v.incoming.remove(tail)));
     }
 
     @Override
@@ -117,13 +301,30 @@ public class VariantGraph {
      * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
      */
     public static class Vertex {
+        private static final int[] NO_TRANSPOSITIONS = new int[0];
+
         private final VariantGraph graph;
-        private final Set<Token> tokens = new HashSet<>();
-        private final Map<Vertex, Set<Witness>> outgoing = new HashMap<>();
-        private final Map<Vertex, Set<Witness>> incoming = new HashMap<>();
+        private final Set<Token> tokens;
+        private final Map<Vertex, Set<Witness>> outgoing;
+        private final Map<Vertex, Set<Witness>> incoming;
+        final int serial;
+        int[] transpositions = NO_TRANSPOSITIONS;
+        WitnessSet witnesses;
 
         public Vertex(VariantGraph graph) {
+            this(graph, new HashSet<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        /**
+         * For vertices of alternative graph implementations, which keep their tokens and edges elsewhere and
+         * therefore override the accessors of this class.
+         */
+        protected Vertex(VariantGraph graph, Set<Token> tokens, Map<Vertex, Set<Witness>> outgoing, Map<Vertex, Set<Witness>> incoming) {
             this.graph = graph;
+            this.tokens = tokens;
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+            this.serial = graph.vertexSerial++;
         }
 
         public Map<Vertex, Set<Witness>> incoming() {
@@ -134,8 +335,11 @@ public class VariantGraph {
             return outgoing;
         }
 
+        /**
+         * @return a read-only snapshot of the transpositions this vertex is part of
+         */
         public Set<Set<Vertex>> transpositions() {
-            return graph.transpositionIndex.getOrDefault(this, Collections.emptySet());
+            return (transpositions.length == 0 ? Collections.emptySet() : new TranspositionSet(graph, transpositions));
         }
 
         public Set<Token> tokens() {
@@ -143,7 +347,10 @@ public class VariantGraph {
         }
 
         public Set<Witness> witnesses() {
-            return incoming().values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+            if (witnesses == null) {
+                witnesses = graph.witnessRegistry.union(incoming().values());
+            }
+            return witnesses;
         }
 
         public void add(Iterable<Token> tokens) {
@@ -155,51 +362,194 @@ public class VariantGraph {
         }
 
         public String toString() {
-            return tokens.toString();
+            return tokens().toString();
+        }
+    }
+
+    /**
+     * A set of vertices transposed in relation to each other. Transpositions are interned by their graph, identified by
+     * consecutive ids and keyed by the sorted serial numbers of their vertices, so that neither finding nor comparing
+     * them requires hashing their vertices.
+     */
+    public static final class Transposition extends AbstractSet<Vertex> {
+        private final int id;
+        private final Vertex[] vertices;
+        private final int[] serials;
+        private final int hashCode;
+
+        Transposition(int id, Vertex[] vertices, int[] serials) {
+            this.id = id;
+            this.vertices = vertices;
+            this.serials = serials;
+            this.hashCode = Arrays.stream(vertices).mapToInt(Object::hashCode).sum();
+        }
+
+        public int id() {
+            return id;
+        }
+
+        @Override
+        public Iterator<Vertex> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(vertices)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return vertices.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Vertex)) {
+                return false;
+            }
+            final int index = Arrays.binarySearch(serials, ((Vertex) o).serial);
+            return index >= 0 && vertices[index] == o;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Transposition) {
+                final Transposition other = (Transposition) o;
+                return Arrays.equals(serials, other.serials) && Arrays.equals(vertices, other.vertices);
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 
+    private static final class TranspositionKey {
+        private final int[] serials;
+        private final int hashCode;
+
+        private TranspositionKey(int[] serials) {
+            this.serials = serials;
+            this.hashCode = Arrays.hashCode(serials);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TranspositionKey && Arrays.equals(serials, ((TranspositionKey) obj).serials);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The transpositions of a vertex, ordered by their ids.
+     */
+    private static final class TranspositionSet extends AbstractSet<Set<Vertex>> {
+        private final Transposition[] transpositions;
+
+        private TranspositionSet(VariantGraph graph, int[] ids) {
+            this.transpositions = new Transposition[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                transpositions[i] = graph.transpositions.get(ids[i]);
+            }
+        }
+
+        @Override
+        public Iterator<Set<Vertex>> iterator() {
+            return Collections.<Set<Vertex>>unmodifiableList(Arrays.asList(transpositions)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return transpositions.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o instanceof Transposition) {
+                final Transposition t = (Transposition) o;
+                final int index = Arrays.binarySearch(transpositions, t, Comparator.comparingInt(Transposition::id));
+                return index >= 0 && transpositions[index].equals(t);
+            }
+            return super.contains(o);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof TranspositionSet) {
+                return Arrays.equals(transpositions, ((TranspositionSet) o).transpositions);
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = 0;
+            for (Transposition t : transpositions) {
+                hashCode += t.hashCode();
+            }
+            return hashCode;
+        }
+    }
+
+    /**
+     * Joins maximal chains of vertices, in which each vertex is the only successor of its predecessor and the only
+     * predecessor of its successor and all vertices are part of the same transpositions.
+     * <p>
+     * The chains are collected in a single pass over the graph in topological order; each chain is then relinked at
+     * once and the transpositions of joined vertices are rewritten in bulk, so that time and memory are linear in the
+     * size of the graph.
+     */
     public static final Function<VariantGraph, VariantGraph> JOIN = graph -> {
-        final Set<Vertex> processed = new HashSet<>();
-        final Deque<Vertex> queue = new ArrayDeque<>(graph.start.outgoing.keySet());
-
-        while (!queue.isEmpty()) {
-            final Vertex vertex = queue.pop();
-            final Set<Set<Vertex>> transpositions = new HashSet<>(vertex.transpositions());
-            if (vertex.outgoing.size() == 1) {
-                final Vertex joinCandidateVertex = vertex.outgoing.keySet().iterator().next();
-                final Set<Set<Vertex>> joinCandidateTranspositions = new HashSet<>(joinCandidateVertex.transpositions());
-
-                boolean canJoin = !graph.end.equals(joinCandidateVertex) && //
-                    joinCandidateVertex.incoming.size() == 1 && //
-                    transpositions.equals(joinCandidateTranspositions);
-                if (canJoin) {
-                    vertex.add(joinCandidateVertex.tokens());
-                    for (Set<Vertex> t : new HashSet<>(joinCandidateVertex.transpositions())) {
-                        final Set<Vertex> transposed = new HashSet<>(t);
-                        transposed.remove(joinCandidateVertex);
-                        transposed.add(vertex);
-                        for (Vertex tv : t) {
-                            graph.transpositionIndex.getOrDefault(tv, Collections.emptySet()).remove(t);
-                        }
-                        graph.transpose(transposed);
-                    }
-
-                    vertex.outgoing.clear();
-                    vertex.outgoing.putAll(joinCandidateVertex.outgoing);
-
-                    vertex.outgoing.keySet().forEach(v -> v.incoming.put(vertex, v.incoming.remove(joinCandidateVertex)));
-
-                    queue.push(vertex);
-                    continue;
+        if (graph.isFrozen()) {
+            throw new IllegalStateException("Graph is frozen");
+        }
+        final Map<Vertex, List<Vertex>> chains = new LinkedHashMap<>();
+        final Map<Vertex, Vertex> heads = new HashMap<>();
+        for (Vertex vertex : graph.vertices()) {
+            if (vertex.equals(graph.start) || heads.containsKey(vertex)) {
+                continue;
+            }
+            Vertex last = vertex;
+            while (last.outgoing().size() == 1) {
+                final Vertex next = last.outgoing().keySet().iterator().next();
+                if (next.equals(graph.end) || next.incoming().size() != 1 || !last.transpositions().equals(next.transpositions())) {
+                    break;
                 }
+                chains.computeIfAbsent(vertex, v -> new ArrayList<>()).add(next);
+                heads.put(next, vertex);
+                last = next;
             }
+        }
 
-            // FIXME: Why do we run out of memory in some cases here, if this is not checked?
-            processed.add(vertex);
-            vertex.outgoing.keySet().stream().filter(v -> !processed.contains(v)).forEach(queue::push);
+        final BitSet affected = new BitSet();
+        for (Vertex joined : heads.keySet()) {
+            for (int id : joined.transpositions) {
+                affected.set(id);
+            }
         }
+        final List<Transposition> transpositions = new ArrayList<>(affected.cardinality());
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            final Transposition t = graph.transpositions.get(id);
+            graph.removeTransposition(t);
+            transpositions.add(t);
+        }
+        for (Transposition t : transpositions) {
+            final Set<Vertex> transposed = new HashSet<>();
+            for (Vertex tv : t) {
+                transposed.add(heads.getOrDefault(tv, tv));
+            }
+            graph.transpose(transposed);
+        }
+
+        chains.forEach(graph::join);
 
+        graph.ranking = null;
+        graph.order = null;
         return graph;
     };
 }
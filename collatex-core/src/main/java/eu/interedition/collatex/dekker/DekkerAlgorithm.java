@@ -89,7 +89,7 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
             // first witness has a fast path
             if (firstWitness) {
                 super.merge(graph, tokens, Collections.emptyMap());
-                updateTokenToVertexArray(tokens, witness);
+                updateTokenToVertexArray(witness);
                 firstWitness = false;
                 continue;
             }
@@ -200,7 +200,7 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
                 mergeTranspositions(graph, transpositions);
             }
 
-            updateTokenToVertexArray(tokens, witness);
+            updateTokenToVertexArray(witness);
 
             if (LOG.isLoggable(Level.FINER)) {
                 LOG.log(Level.FINER, "!{0}: {1}", new Object[]{graph, StreamUtil.stream(graph.vertices()).map(Object::toString).collect(Collectors.joining(", "))});
@@ -208,15 +208,12 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
         }
     }
 
-    private void updateTokenToVertexArray(Iterable<Token> tokens, Witness witness) {
+    private void updateTokenToVertexArray(Witness witness) {
         // we need to update the token -> vertex map
-        // that information is stored in protected map
-        int tokenPosition = tokenIndex.getStartTokenPositionForWitness(witness);
-        for (Token token : tokens) {
-            VariantGraph.Vertex vertex = witnessTokenVertices.get(token);
-            vertex_array[tokenPosition] = vertex;
-            tokenPosition++;
-        }
+        // that information is kept by the base class for the last merged witness, indexed by token position
+        final int tokenPosition = tokenIndex.getStartTokenPositionForWitness(witness);
+        final VariantGraph.Vertex[] witnessTokenVertexArray = witnessTokenVertexArray();
+        System.arraycopy(witnessTokenVertexArray, 0, vertex_array, tokenPosition, witnessTokenVertexArray.length);
     }
 
     @Override
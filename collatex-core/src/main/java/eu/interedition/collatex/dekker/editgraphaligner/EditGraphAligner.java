@@ -94,7 +94,7 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
             // first witness has a fast path
             if (firstWitness) {
                 super.merge(graph, tokens, emptyMap());
-                updateTokenToVertexArray(tokens, witness);
+                updateTokenToVertexArray(witness);
                 firstWitness = false;
                 continue;
             }
@@ -138,7 +138,7 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
 
             Map<Token, VariantGraph.Vertex> aligned = alignMatchingTokens(cube);
             merge(graph, tokens, aligned);
-            updateTokenToVertexArray(tokens, witness);
+            updateTokenToVertexArray(witness);
         }
     }
 
@@ -272,15 +272,12 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
 //        System.out.println();
 //    }
 
-    private void updateTokenToVertexArray(Iterable<Token> tokens, Witness witness) {
+    private void updateTokenToVertexArray(Witness witness) {
         // we need to update the token -> vertex map
-        // that information is stored in protected map
-        int tokenPosition = tokenIndex.getStartTokenPositionForWitness(witness);
-        for (Token token : tokens) {
-            VariantGraph.Vertex vertex = witnessTokenVertices.get(token);
-            vertex_array[tokenPosition] = vertex;
-            tokenPosition++;
-        }
+        // that information is kept by the base class for the last merged witness, indexed by token position
+        final int tokenPosition = tokenIndex.getStartTokenPositionForWitness(witness);
+        final VariantGraph.Vertex[] witnessTokenVertexArray = witnessTokenVertexArray();
+        System.arraycopy(witnessTokenVertexArray, 0, vertex_array, tokenPosition, witnessTokenVertexArray.length);
     }
 
     @Override
@@ -5,14 +5,11 @@ import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.VariantGraph.Vertex;
 import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.dekker.Match;
-import eu.interedition.collatex.dekker.token_index.Block;
 import eu.interedition.collatex.dekker.token_index.TokenIndex;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Created by Ronald Haentjens Dekker on 08/01/17.
@@ -29,36 +26,22 @@ public class MatchCube {
 
         Witness witness = witnessTokens.iterator().next().getWitness();
         int startTokenPositionForWitness = tokenIndex.getStartTokenPositionForWitness(witness);
-        List<Block.Instance> instances = tokenIndex.getBlockInstancesForWitness(witness);
-        for (Block.Instance witnessInstance : instances) {
-            // System.out.println("Debug creating matches for witness block instance: "+witnessInstance);
-            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block
-            // calculate graph block instances
-            // fetch block
-            Block block = witnessInstance.block;
-            List<Block.Instance> allInstances = block.getAllInstances();
-            List<Block.Instance> graphInstances = allInstances.stream()//
-                .filter(instance -> instance.start_token < startTokenPositionForWitness)//
-                .collect(Collectors.toList());
-            // now for every graph block instance we have to create matches
-            for (Block.Instance graphInstance : graphInstances) {
-                int graph_start_token = graphInstance.start_token;
-                for (int i = 0; i < block.length; i++) {
-                    VariantGraph.Vertex v = vertex_array[graph_start_token + i];
-                    if (v == null) {
-                        throw new RuntimeException("Vertex is null for token \"" + graph_start_token + i + "\" that is supposed to be mapped to a vertex in the graph!");
-                    }
-                    int rank = variantGraphRanking.apply(v) - 1;
-                    int witnessStartToken = witnessInstance.start_token + i;
-                    int row = witnessStartToken - startTokenPositionForWitness;
-                    Token token = tokenIndex.token_array[witnessStartToken];
-                    Match match = new Match(v, token);
-                    MatchCoordinate coordinate = new MatchCoordinate(row, rank);
-//                    System.out.println("match:[" + row + "," + rank + "]:" + token);
-                    matches.put(coordinate, match);
+        // every occurrence of a block in the witness is combined with the occurrences of that block already present in the graph
+        tokenIndex.visitOccurrences(witness, (start, end, length, witness_start_token, graph_start_token) -> {
+            for (int i = 0; i < length; i++) {
+                VariantGraph.Vertex v = vertex_array[graph_start_token + i];
+                if (v == null) {
+                    throw new RuntimeException("Vertex is null for token \"" + graph_start_token + i + "\" that is supposed to be mapped to a vertex in the graph!");
                 }
+                int rank = variantGraphRanking.apply(v) - 1;
+                int witnessStartToken = witness_start_token + i;
+                int row = witnessStartToken - startTokenPositionForWitness;
+                Token token = tokenIndex.token_array[witnessStartToken];
+                Match match = new Match(v, token);
+                MatchCoordinate coordinate = new MatchCoordinate(row, rank);
+                matches.put(coordinate, match);
             }
-        }
+        });
     }
 
     private boolean hasTokens(Vertex vertex) {
@@ -86,11 +86,7 @@ public class Block {
 
     private int calculateDepth() {
         // the same block can occur multiple times in one witness
-        Set<Witness> witnesses = new HashSet<>();
-        for (Block.Instance instance : getAllInstances()) {
-            witnesses.add(instance.getWitness());
-        }
-        return witnesses.size();
+        return tokenIndex.depth(start, end);
     }
 
     public static class Instance {
@@ -2,6 +2,8 @@ package eu.interedition.collatex.dekker.token_index;
 
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.Witness;
+import eu.interedition.collatex.matching.TokenSymbols;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
 import eu.interedition.collatex.suffixarray.SAIS;
 import eu.interedition.collatex.suffixarray.SuffixArrays;
 import eu.interedition.collatex.suffixarray.SuffixData;
@@ -14,16 +16,21 @@ import java.util.*;
  */
 public class TokenIndex {
     private final List<? extends Iterable<Token>> witnesses;
-    private final Comparator<Token> comparator;
+    private final TokenSymbols symbols;
+    private final ISuffixArrayBuilder suffixArrayBuilder;
     //TODO: not sure this functionality should be in this class or in a separate class
     private Map<Witness, Integer> witnessToStartToken;
     private Map<Witness, Integer> witnessToEndToken;
     public Token[] token_array;
+    public int[] token_ids;
     //END witness data
+    // witness of every position in the token array, -1 for markers
+    private int[] token_witness;
     public int[] suffix_array;
     public int[] LCP_array;
-    public List<Block> blocks;
-    private Map<Witness, List<Block.Instance>> witnessToBlockInstances;
+    private final Map<Witness, List<Block.Instance>> witnessToBlockInstances = new HashMap<>();
+    private int[] witnessSeen;
+    private int depthQuery;
 
 
     public TokenIndex(Comparator<Token> comparator, Iterable<Token>... witness) {
@@ -31,26 +38,51 @@ public class TokenIndex {
     }
 
     public TokenIndex(Comparator<Token> comparator, List<? extends Iterable<Token>> witnesses) {
+        this(comparator, new SAIS(), witnesses);
+    }
+
+    /**
+     * @param suffixArrayBuilder builds the suffix array of the token symbols, which form a dense alphabet of positive
+     *                           integers as large as the number of distinct tokens; of the builders in the
+     *                           {@link eu.interedition.collatex.suffixarray suffix array package}, {@link SAIS},
+     *                           {@link eu.interedition.collatex.suffixarray.QSufSort} and
+     *                           {@link eu.interedition.collatex.suffixarray.Skew} support alphabets of this size, SA-IS
+     *                           being the fastest on token input
+     */
+    public TokenIndex(Comparator<Token> comparator, ISuffixArrayBuilder suffixArrayBuilder, List<? extends Iterable<Token>> witnesses) {
         this.witnesses = witnesses;
-        this.comparator = new MarkerTokenComparator(comparator);
+        this.symbols = new TokenSymbols(comparator);
+        this.suffixArrayBuilder = suffixArrayBuilder;
     }
 
     public int getStartTokenPositionForWitness(Witness witness) {
         return witnessToStartToken.get(witness);
     }
 
+    /**
+     * @return the position of the end marker of the given witness in the token array
+     */
+    public int getEndTokenPositionForWitness(Witness witness) {
+        return witnessToEndToken.get(witness);
+    }
+
     // 1. prepare token array
     // 2. derive the suffix array
     // 3. derive LCP array
-    // 4. derive LCP intervals
+    // 4. LCP intervals are derived on demand (see visitIntervals())
     // TODO: we do not have to store witnesses!
     public void prepare() {
         this.token_array = this.prepareTokenArray();
-        SuffixData suffixData = SuffixArrays.createWithLCP(token_array, new SAIS(), comparator);
+        this.token_ids = this.prepareTokenIds();
+        SuffixData suffixData = SuffixArrays.createWithLCP(suffixArrayInput(), 0, token_array.length, suffixArrayBuilder);
         this.suffix_array = suffixData.getSuffixArray();
+        if (suffix_array.length > token_array.length) {
+            // some builders return arrays with extra cells
+            this.suffix_array = Arrays.copyOf(suffix_array, token_array.length);
+        }
         this.LCP_array = suffixData.getLCP();
-        this.blocks = splitLCP_ArrayIntoIntervals();
-        constructWitnessToBlockInstancesMap();
+        this.witnessSeen = new int[witnessToStartToken.size()];
+        witnessToBlockInstances.clear();
     }
 
     private Token[] prepareTokenArray() {
@@ -73,9 +105,38 @@ public class TokenIndex {
             tempTokenList.add(new MarkerToken(witnessToStartToken.size()));
             counter++;
         }
+        this.token_witness = new int[counter];
+        Arrays.fill(token_witness, -1);
+        int witnessId = 0;
+        for (Map.Entry<Witness, Integer> witnessStart : witnessToStartToken.entrySet()) {
+            Arrays.fill(token_witness, witnessStart.getValue(), witnessToEndToken.get(witnessStart.getKey()), witnessId++);
+        }
         return tempTokenList.toArray(new Token[tempTokenList.size()]);
     }
 
+    // every marker token is a symbol of its own, so that no common prefix extends across witnesses
+    private int[] prepareTokenIds() {
+        final int[] ids = new int[token_array.length];
+        for (int i = 0; i < token_array.length; i++) {
+            final Token token = token_array[i];
+            ids[i] = (token instanceof MarkerToken ? symbols.unique() : symbols.id(token));
+        }
+        return ids;
+    }
+
+    // the symbols shifted to be positive, followed by the trailing space some builders require
+    private int[] suffixArrayInput() {
+        final int[] input = new int[token_ids.length + SuffixArrays.MAX_EXTRA_TRAILING_SPACE];
+        for (int i = 0; i < token_ids.length; i++) {
+            input[i] = token_ids[i] + 1;
+        }
+        return input;
+    }
+
+    public TokenSymbols getSymbols() {
+        return symbols;
+    }
+
     protected static class MarkerToken implements Token {
         private final int witnessIdentifier;
 
@@ -127,52 +188,207 @@ public class TokenIndex {
         }
     }
 
-    protected List<Block> splitLCP_ArrayIntoIntervals() {
-        List<Block> closedIntervals = new ArrayList<>();
+    /**
+     * Receives LCP intervals: ranges of the suffix array whose suffixes share a common prefix of tokens.
+     */
+    @FunctionalInterface
+    public interface IntervalVisitor {
+
+        /**
+         * @param start  the first position of the interval in the suffix array
+         * @param end    the last position of the interval in the suffix array, inclusive
+         * @param length the length of the common prefix
+         */
+        void visit(int start, int end, int length);
+    }
+
+    /**
+     * Visits all LCP intervals.
+     *
+     * @see #visitIntervals(int, int, int, int, IntervalVisitor)
+     */
+    public void visitIntervals(IntervalVisitor visitor) {
+        visitIntervals(1, 1, Integer.MAX_VALUE, 1, visitor);
+    }
+
+    /**
+     * Walks the LCP intervals on the suffix and LCP arrays, without creating objects for them.
+     * <p>
+     * Intervals are visited as they are closed, nested intervals before the ones enclosing them; intervals reaching to
+     * the end of the suffix array are visited last, from the outermost one inwards. This is the order of the blocks
+     * returned by {@link #splitLCP_ArrayIntoIntervals()}.
+     *
+     * @param minLength    the minimum length of the common prefix of visited intervals
+     * @param minFrequency the minimum number of suffixes in visited intervals
+     * @param maxFrequency the maximum number of suffixes in visited intervals
+     * @param minDepth     the minimum number of witnesses visited intervals occur in
+     */
+    public void visitIntervals(int minLength, int minFrequency, int maxFrequency, int minDepth, IntervalVisitor visitor) {
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        int open = 0;
         int previousLCP_value = 0;
-        Stack<Block> openIntervals = new Stack<>();
         for (int idx = 0; idx < LCP_array.length; idx++) {
-            int lcp_value = LCP_array[idx];
+            final int lcp_value = LCP_array[idx];
             if (lcp_value > previousLCP_value) {
-                openIntervals.push(new Block(this, idx - 1, lcp_value));
+                if (open == starts.length) {
+                    starts = Arrays.copyOf(starts, open * 2);
+                    lengths = Arrays.copyOf(lengths, open * 2);
+                }
+                starts[open] = idx - 1;
+                lengths[open++] = lcp_value;
                 previousLCP_value = lcp_value;
             } else if (lcp_value < previousLCP_value) {
                 // close open intervals that are larger than current LCP value
-                while (!openIntervals.isEmpty() && openIntervals.peek().length > lcp_value) {
-                    Block a = openIntervals.pop();
-                    closedIntervals.add(new Block(this, a.start, idx - 1, a.length));
+                int start = -1;
+                while (open > 0 && lengths[open - 1] > lcp_value) {
+                    start = starts[--open];
+                    visit(start, idx - 1, lengths[open], minLength, minFrequency, maxFrequency, minDepth, visitor);
                 }
-                // then: open a new interval starting with filtered intervals
+                // then: open a new interval starting with the last closed one
                 if (lcp_value > 0) {
-                    int start = closedIntervals.get(closedIntervals.size() - 1).start;
-                    openIntervals.push(new Block(this, start, lcp_value));
+                    starts[open] = start;
+                    lengths[open++] = lcp_value;
                 }
                 previousLCP_value = lcp_value;
             }
         }
-        // add all the open intervals to the result
-        for (Block interval : openIntervals) {
-            if (interval.length > 0) {
-                closedIntervals.add(new Block(this, interval.start, LCP_array.length - 1, interval.length));
+        // visit the intervals still open
+        for (int ic = 0; ic < open; ic++) {
+            if (lengths[ic] > 0) {
+                visit(starts[ic], LCP_array.length - 1, lengths[ic], minLength, minFrequency, maxFrequency, minDepth, visitor);
             }
         }
-        return closedIntervals;
     }
 
-    private void constructWitnessToBlockInstancesMap() {
-        witnessToBlockInstances = new HashMap<>();
-        for (Block interval : blocks) {
-            for (Block.Instance instance : interval.getAllInstances()) {
-                Witness w = instance.getWitness();
-                List<Block.Instance> instances = witnessToBlockInstances.computeIfAbsent(w, v -> new ArrayList<>());
-                instances.add(instance);
+    private void visit(int start, int end, int length, int minLength, int minFrequency, int maxFrequency, int minDepth, IntervalVisitor visitor) {
+        final int frequency = end - start + 1;
+        if (length < minLength || frequency < minFrequency || frequency > maxFrequency) {
+            return;
+        }
+        if (minDepth > 1 && depth(start, end, minDepth) < minDepth) {
+            return;
+        }
+        visitor.visit(start, end, length);
+    }
+
+    /**
+     * @return the number of witnesses the suffixes in the given range of the suffix array start in
+     */
+    public int depth(int start, int end) {
+        return depth(start, end, Integer.MAX_VALUE);
+    }
+
+    // stops counting once the limit is reached
+    private int depth(int start, int end, int limit) {
+        if (++depthQuery == 0) {
+            Arrays.fill(witnessSeen, 0);
+            depthQuery = 1;
+        }
+        int depth = 0;
+        for (int i = start; i <= end; i++) {
+            final int witness = token_witness[suffix_array[i]];
+            if (witness >= 0 && witnessSeen[witness] != depthQuery) {
+                witnessSeen[witness] = depthQuery;
+                if (++depth == limit) {
+                    break;
+                }
             }
         }
+        return depth;
     }
 
+    /**
+     * Receives pairs of occurrences of an LCP interval.
+     */
+    @FunctionalInterface
+    public interface OccurrenceVisitor {
+
+        /**
+         * @param start        the first position of the interval in the suffix array
+         * @param end          the last position of the interval in the suffix array, inclusive
+         * @param length       the length of the common prefix
+         * @param witnessToken the position of the occurrence in the witness in the token array
+         * @param graphToken   the position of the occurrence in a preceding witness in the token array
+         */
+        void visit(int start, int end, int length, int witnessToken, int graphToken);
+    }
+
+    /**
+     * Visits every occurrence of an LCP interval in the given witness, paired with every occurrence of the same interval
+     * in the witnesses preceding it, i.e. the ones already aligned in the variant graph. Intervals are visited in the
+     * order of {@link #visitIntervals(IntervalVisitor)}, occurrences in the order of the suffix array.
+     */
+    public void visitOccurrences(Witness witness, OccurrenceVisitor visitor) {
+        final int witnessStart = witnessToStartToken.get(witness);
+        final int witnessEnd = witnessToEndToken.get(witness);
+        final int[][] occurrences = { new int[16], new int[16] };
+        visitIntervals(1, 2, Integer.MAX_VALUE, 1, (start, end, length) -> {
+            int[] witnessTokens = occurrences[0];
+            int[] graphTokens = occurrences[1];
+            int witnessCount = 0;
+            int graphCount = 0;
+            for (int i = start; i <= end; i++) {
+                final int token = suffix_array[i];
+                if (token < witnessStart) {
+                    if (graphCount == graphTokens.length) {
+                        graphTokens = occurrences[1] = Arrays.copyOf(graphTokens, graphCount * 2);
+                    }
+                    graphTokens[graphCount++] = token;
+                } else if (token < witnessEnd) {
+                    if (witnessCount == witnessTokens.length) {
+                        witnessTokens = occurrences[0] = Arrays.copyOf(witnessTokens, witnessCount * 2);
+                    }
+                    witnessTokens[witnessCount++] = token;
+                }
+            }
+            for (int wc = 0; wc < witnessCount; wc++) {
+                for (int gc = 0; gc < graphCount; gc++) {
+                    visitor.visit(start, end, length, witnessTokens[wc], graphTokens[gc]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Materializes all LCP intervals as blocks; matchers should rather {@link #visitIntervals(IntervalVisitor) visit}
+     * the intervals they need.
+     */
+    protected List<Block> splitLCP_ArrayIntoIntervals() {
+        final List<Block> blocks = new ArrayList<>();
+        visitIntervals((start, end, length) -> blocks.add(new Block(this, start, end, length)));
+        return blocks;
+    }
+
+    /**
+     * Creates instances of the blocks occurring in the given witness, when first asked for them. Only blocks with an
+     * instance in the witness are created.
+     */
     //NOTE: An empty list is returned when there are no instances for the specified witness
     public List<Block.Instance> getBlockInstancesForWitness(Witness w) {
-        return witnessToBlockInstances.computeIfAbsent(w, v -> Collections.emptyList());
+        return witnessToBlockInstances.computeIfAbsent(w, this::blockInstances);
+    }
+
+    private List<Block.Instance> blockInstances(Witness witness) {
+        final Integer witnessStart = witnessToStartToken.get(witness);
+        if (witnessStart == null) {
+            return Collections.emptyList();
+        }
+        final int witnessEnd = witnessToEndToken.get(witness);
+        final List<Block.Instance> instances = new ArrayList<>();
+        visitIntervals((start, end, length) -> {
+            Block block = null;
+            for (int i = start; i <= end; i++) {
+                final int token = suffix_array[i];
+                if (token >= witnessStart && token < witnessEnd) {
+                    if (block == null) {
+                        block = new Block(this, start, end, length);
+                    }
+                    instances.add(new Block.Instance(token, block));
+                }
+            }
+        });
+        return instances;
     }
 
     public int size() {
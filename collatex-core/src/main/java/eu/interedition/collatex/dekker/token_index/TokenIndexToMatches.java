@@ -6,12 +6,16 @@ import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.dekker.Match;
 import eu.interedition.collatex.dekker.island.Coordinate;
 import eu.interedition.collatex.dekker.island.Island;
+import eu.interedition.collatex.matching.TokenSymbols;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Created by ronald on 4/26/15.
@@ -27,45 +31,78 @@ public class TokenIndexToMatches {
         // an island is a graph instance and a witness instance of the same block combined
         Witness witness = w.iterator().next().getWitness();
         int startTokenPositionForWitness = tokenIndex.getStartTokenPositionForWitness(witness);
-        List<Block.Instance> instances = tokenIndex.getBlockInstancesForWitness(witness);
         // we have to combine each instance in the witness with the other instances already present in the graph
-        for (Block.Instance witnessInstance : instances) {
-            // System.out.println("Debug creating matches for witness block instance: "+witnessInstance);
-            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block
-            // calculate graph block instances
-            // fetch block
-            Block block = witnessInstance.block;
-            List<Block.Instance> allInstances = block.getAllInstances();
-            List<Block.Instance> graphInstances = allInstances.stream()//
-                    .filter(instance -> instance.start_token < startTokenPositionForWitness)//
-                    .collect(Collectors.toList());
-            // now for every graph block instance we have to create matches
+        // blocks are only created for intervals occurring both in the witness and in the graph
+        Block[] block = new Block[1];
+        tokenIndex.visitOccurrences(witness, (start, end, length, witness_start_token, graph_start_token) -> {
+            if (block[0] == null || block[0].start != start || block[0].end != end) {
+                block[0] = new Block(tokenIndex, start, end, length);
+            }
+            Block.Instance witnessInstance = new Block.Instance(witness_start_token, block[0]);
+            // for every instance of the block in the graph we have to create matches
             // for backwards compatibility reasons we do that with the Island and Coordinates classes
-            for (Block.Instance graphInstance : graphInstances) {
-                // we need to create an island for every block instance in the graph corresponding to this block instance in the witness
-                Island island = new Island(witnessInstance);
-                // for every matching token from the witness with a vertex in the graph we need to create a coordinate and
-                // 1) add it to the island and 2) set the corresponding cell in the table
-                // set the tokens and vertices on the table
-                int graph_start_token = graphInstance.start_token;
-                for (int i = 0; i < block.length; i++) {
-                    VariantGraph.Vertex v = vertex_array[graph_start_token + i];
-                    if (v == null) {
-                        throw new RuntimeException("Vertex is null for token \"+graph_start_token+i+\" that is supposed to be mapped to a vertex in the graph!");
-                    }
-                    int column = ranking.apply(v) - 1;
-                    int witnessStartToken = witnessInstance.start_token + i;
-                    int row = witnessStartToken - startTokenPositionForWitness;
-                    // create coordinate and at it to the Island for the combination of graph block instance and witness block instance
-                    // /*if (i == 0)*/ System.out.println("We go "+row + " "+column +" "+witnessStartToken);
-                    Token token = tokenIndex.token_array[witnessStartToken];
-                    Match match = new Match(v, token);
-                    Coordinate coordinate = new Coordinate(row, column, match);
-                    island.add(coordinate);
+            // we need to create an island for every block instance in the graph corresponding to this block instance in the witness
+            Island island = new Island(witnessInstance);
+            // for every matching token from the witness with a vertex in the graph we need to create a coordinate and
+            // 1) add it to the island and 2) set the corresponding cell in the table
+            // set the tokens and vertices on the table
+            for (int i = 0; i < length; i++) {
+                VariantGraph.Vertex v = vertex_array[graph_start_token + i];
+                if (v == null) {
+                    throw new RuntimeException("Vertex is null for token \"+graph_start_token+i+\" that is supposed to be mapped to a vertex in the graph!");
                 }
-                result.add(island);
+                int column = ranking.apply(v) - 1;
+                int witnessStartToken = witness_start_token + i;
+                int row = witnessStartToken - startTokenPositionForWitness;
+                // create coordinate and at it to the Island for the combination of graph block instance and witness block instance
+                Token token = tokenIndex.token_array[witnessStartToken];
+                Match match = new Match(v, token);
+                Coordinate coordinate = new Coordinate(row, column, match);
+                island.add(coordinate);
             }
+            result.add(island);
+        });
+        if (tokenIndex.getSymbols().hasNearIds()) {
+            addNearMatches(tokenIndex, vertex_array, ranking, witness, result);
         }
         return result;
     }
+
+    /**
+     * Adds an island of one token for every pair of a witness token and a graph token whose ids differ, but which are
+     * near each other according to the comparator, as the suffix array only yields blocks of tokens with equal ids.
+     * Witness tokens with an equal token in the graph are not matched with near ones.
+     */
+    private static void addNearMatches(TokenIndex tokenIndex, VariantGraph.Vertex[] vertex_array, VariantGraphRanking ranking, Witness witness, Set<Island> result) {
+        final TokenSymbols symbols = tokenIndex.getSymbols();
+        final int witnessStart = tokenIndex.getStartTokenPositionForWitness(witness);
+        final int witnessEnd = tokenIndex.getEndTokenPositionForWitness(witness);
+
+        // the positions of the graph tokens per id
+        final Map<Integer, List<Integer>> graphTokens = new HashMap<>();
+        for (int position = 0; position < witnessStart; position++) {
+            if (vertex_array[position] != null) {
+                graphTokens.computeIfAbsent(tokenIndex.token_ids[position], id -> new ArrayList<>()).add(position);
+            }
+        }
+
+        // near matches are no interval of the suffix array; their blocks are of length 1 and depth 0
+        final Block nearMatch = new Block(tokenIndex, 0, 1);
+        for (int position = witnessStart; position < witnessEnd; position++) {
+            if (graphTokens.containsKey(tokenIndex.token_ids[position])) {
+                continue;
+            }
+            final int row = position - witnessStart;
+            final Token token = tokenIndex.token_array[position];
+            final Block.Instance witnessInstance = new Block.Instance(position, nearMatch);
+            symbols.near(token, id -> {
+                for (int graphPosition : graphTokens.getOrDefault(id, Collections.emptyList())) {
+                    final VariantGraph.Vertex v = vertex_array[graphPosition];
+                    final Island island = new Island(witnessInstance);
+                    island.add(new Coordinate(row, ranking.apply(v) - 1, new Match(v, token)));
+                    result.add(island);
+                }
+            });
+        }
+    }
 }
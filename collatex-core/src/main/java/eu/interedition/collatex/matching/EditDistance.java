@@ -19,59 +19,109 @@
 
 package eu.interedition.collatex.matching;
 
+/**
+ * Levenshtein distance between strings.
+ * <p>
+ * Distances are computed row by row in scratch buffers kept per thread, so that no memory is allocated per
+ * comparison. Given an upper bound, only the diagonal band of the matrix within that bound is computed, and the
+ * computation stops as soon as a row exceeds it; as the bound in near matching is usually small, comparing two tokens
+ * then takes time linear in their length.
+ */
 public final class EditDistance {
     private static final int MAX_DISTANCE_COMPARISON = 2500;
 
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[][] { new int[32], new int[32] });
+
+    private EditDistance() {
+    }
+
+    /**
+     * @return the distance between the given strings, or {@value #MAX_DISTANCE_COMPARISON} if the product of their
+     *         lengths exceeds it
+     */
     public static int compute(String str1, String str2) {
         if ((str1.length() * str2.length() > MAX_DISTANCE_COMPARISON)) {
             return MAX_DISTANCE_COMPARISON;
         }
+        return compute(str1, str2, Math.max(str1.length(), str2.length()));
+    }
 
-        final char[] str1Chars = str1.toCharArray();
-        final int str1Length = str1Chars.length;
-        final char[] str2Chars = str2.toCharArray();
-        final int str2Length = str2Chars.length;
-
-        if (str1Length == 0) {
-            return str2Length;
+    /**
+     * @param maxDistance the largest distance of interest
+     * @return the distance between the given strings if it does not exceed <code>maxDistance</code>, or
+     *         <code>maxDistance + 1</code> otherwise
+     */
+    public static int compute(String str1, String str2, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException(Integer.toString(maxDistance));
         }
-        if (str2Length == 0) {
-            return str1Length;
+        if (str1.length() > str2.length()) {
+            final String tmp = str1;
+            str1 = str2;
+            str2 = tmp;
         }
+        final int exceeded = (maxDistance == Integer.MAX_VALUE ? maxDistance : maxDistance + 1);
 
-        int[][][] cache = new int[30][][];
-        int matrix[][];
-        if (str2Length >= cache.length) {
-            matrix = form(str1Length, str2Length);
-        } else if (cache[str2Length] != null) {
-            matrix = cache[str2Length];
-        } else {
-            matrix = cache[str2Length] = form(str1Length, str2Length);
+        // common prefixes and suffixes do not add to the distance
+        int start = 0;
+        int end1 = str1.length();
+        int end2 = str2.length();
+        while (start < end1 && str1.charAt(start) == str2.charAt(start)) {
+            start++;
+        }
+        while (end1 > start && str1.charAt(end1 - 1) == str2.charAt(end2 - 1)) {
+            end1--;
+            end2--;
         }
 
-        for (int i = 1; i <= str1Length; i++) {
-            final char str1Char = str1Chars[i - 1];
-            for (int j = 1; j <= str2Length; j++) {
-                final char str2Char = str2Chars[j - 1];
-                final int cost = (str1Char == str2Char ? 0 : 1);
-                matrix[i][j] = min3(matrix[i - 1][j] + 1, matrix[i][j - 1] + 1, matrix[i - 1][j - 1] + cost);
-            }
+        final int n = end1 - start;
+        final int m = end2 - start;
+        if (m - n > maxDistance) {
+            return exceeded;
+        }
+        if (n == 0) {
+            return m;
         }
 
-        return matrix[str1Length][str2Length];
-    }
+        int[][] rows = ROWS.get();
+        if (rows[0].length <= m) {
+            rows = new int[][] { new int[m + 1], new int[m + 1] };
+            ROWS.set(rows);
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
 
-    private static int[][] form(int n, int m) {
-        int[][] d = new int[n + 1][m + 1];
+        final int band = Math.min(maxDistance, m);
+        for (int j = 0; j <= m; j++) {
+            previous[j] = (j <= band ? j : exceeded);
+        }
+        for (int i = 1; i <= n; i++) {
+            final char str1Char = str1.charAt(start + i - 1);
+            final int from = Math.max(1, i - band);
+            final int to = Math.min(m, i + band);
 
-        for (int i = 0; i <= n; i++) {
-            d[i][0] = i;
+            current[from - 1] = (from == 1 ? Math.min(i, exceeded) : exceeded);
+            int rowMinimum = current[from - 1];
+            for (int j = from; j <= to; j++) {
+                final int cost = (str1Char == str2.charAt(start + j - 1) ? 0 : 1);
+                final int distance = Math.min(min3(previous[j] + 1, current[j - 1] + 1, previous[j - 1] + cost), exceeded);
+                current[j] = distance;
+                if (distance < rowMinimum) {
+                    rowMinimum = distance;
+                }
+            }
+            if (to < m) {
+                current[to + 1] = exceeded;
+            }
+            if (rowMinimum > maxDistance) {
+                return exceeded;
+            }
 
+            final int[] tmp = previous;
+            previous = current;
+            current = tmp;
         }
-        for (int j = 0; j <= m; j++) {
-            d[0][j] = j;
-        }
-        return d;
+        return previous[m];
     }
 
     private static int min3(int a, int b, int c) {
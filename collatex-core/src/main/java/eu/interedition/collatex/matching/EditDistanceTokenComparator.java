@@ -36,11 +36,15 @@ public class EditDistanceTokenComparator implements Comparator<Token> {
         this.threshold = threshold;
     }
 
+    public int getThreshold() {
+        return threshold;
+    }
+
     @Override
     public int compare(Token base, Token witness) {
         final String baseContent = ((SimpleToken) base).getNormalized();
         final String witnessContent = ((SimpleToken) witness).getNormalized();
-        return (EditDistance.compute(baseContent, witnessContent) <= threshold) ?
+        return (EditDistance.compute(baseContent, witnessContent, threshold) <= threshold) ?
                 0 : baseContent.compareTo(witnessContent);
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.matching;
+
+import eu.interedition.collatex.Token;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * A comparator of tokens which is consistent with the equality of a key: two tokens are compared as equal if and only
+ * if their keys are {@link Object#equals(Object) equal}.
+ * <p>
+ * Collation algorithms detect such comparators and match tokens by hashing their keys, instead of comparing them
+ * pairwise. Comparators which are not transitive, like the {@link EditDistanceTokenComparator}, must not implement
+ * this interface. Subclasses of implementing comparators which override {@link #compare(Object, Object)} without
+ * overriding {@link #key(Token)} as well inherit a key which need not agree with their notion of equality; they are
+ * not deemed keyed (see {@link #keyOf(Comparator)}) and compared pairwise.
+ */
+public interface KeyedTokenComparator extends Comparator<Token> {
+
+    /**
+     * @return the key of the given token, with {@link Object#hashCode()} consistent with equality
+     */
+    Object key(Token token);
+
+    /**
+     * @return the key function of the given comparator, or <code>null</code> if it is not keyed, or if its class
+     *         overrides {@link #compare(Object, Object)} below the class declaring {@link #key(Token)}
+     */
+    static Function<Token, ?> keyOf(Comparator<Token> comparator) {
+        if (!(comparator instanceof KeyedTokenComparator)) {
+            return null;
+        }
+        try {
+            final Class<?> type = comparator.getClass();
+            final Class<?> comparing = type.getMethod("compare", Token.class, Token.class).getDeclaringClass();
+            final Class<?> keying = type.getMethod("key", Token.class).getDeclaringClass();
+            if (!comparing.isAssignableFrom(keying)) {
+                return null;
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        return ((KeyedTokenComparator) comparator)::key;
+    }
+}
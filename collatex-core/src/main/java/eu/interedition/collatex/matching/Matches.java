@@ -21,12 +21,10 @@ package eu.interedition.collatex.matching;
 
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.simple.SimpleToken;
 import eu.interedition.collatex.util.StreamUtil;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class Matches {
 
@@ -35,46 +33,116 @@ public class Matches {
     public final Set<Token> ambiguousInWitness;
     public final Set<Token> uniqueInWitness;
 
+    /**
+     * Matches the first token of each vertex against the tokens of a witness.
+     * <p>
+     * For {@link KeyedTokenComparator keyed comparators}, witness tokens are bucketed by the
+     * {@link TokenSymbols symbol} of their key once and each vertex is joined with its bucket; for comparators matching
+     * by a small edit distance, the buckets of all near keys are joined via a {@link NearMatchIndex}. Tokens are only
+     * compared pairwise for all other comparators.
+     */
     public static Matches between(final Iterable<VariantGraph.Vertex> vertices, final Iterable<Token> witnessTokens, Comparator<Token> comparator) {
-
-        final Map<Token, List<VariantGraph.Vertex>> allMatches = new HashMap<>();
-
-        StreamUtil.stream(vertices).forEach(vertex ->
-                vertex.tokens().stream().findFirst().ifPresent(baseToken ->
-                        StreamUtil.stream(witnessTokens)
-                                .filter(witnessToken -> comparator.compare(baseToken, witnessToken) == 0)
-                                .forEach(matchingToken -> allMatches.computeIfAbsent(matchingToken, t -> new ArrayList<>()).add(vertex))));
-
-        final Set<Token> unmatchedInWitness = StreamUtil.stream(witnessTokens)
-                .filter(t -> !allMatches.containsKey(t))
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-
-        final Set<VariantGraph.Vertex> ambiguousInBase = allMatches.values().stream()
-                .flatMap(List::stream)
-                .collect(Collectors.toMap(Function.identity(), v -> 1, (a, b) -> a + b))
-                .entrySet()
-                .stream()
-                .filter(v -> v.getValue() > 1)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+        final Token[] tokens = StreamUtil.stream(witnessTokens).toArray(Token[]::new);
+        final TokenSymbols symbols = new TokenSymbols(comparator);
+        final NearMatchIndex nearMatches = (symbols.isExact() ? null : NearMatchIndex.of(comparator));
+
+        int[][] buckets = null;
+        if (symbols.isExact()) {
+            buckets = buckets(symbols.ids(tokens), symbols.size());
+        } else if (nearMatches != null) {
+            final int[] forms = new int[tokens.length];
+            for (int tc = 0; tc < tokens.length; tc++) {
+                forms[tc] = nearMatches.add(((SimpleToken) tokens[tc]).getNormalized());
+            }
+            buckets = buckets(forms, nearMatches.size());
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final List<VariantGraph.Vertex>[] tokenMatches = new List[tokens.length];
+        final Set<VariantGraph.Vertex> ambiguousInBase = new HashSet<>();
+        final int[] vertexMatches = new int[1];
+        final int[][] joined = buckets;
+        for (VariantGraph.Vertex vertex : vertices) {
+            final Iterator<Token> vertexTokens = vertex.tokens().iterator();
+            if (!vertexTokens.hasNext()) {
+                continue;
+            }
+            final Token baseToken = vertexTokens.next();
+            vertexMatches[0] = 0;
+            if (symbols.isExact()) {
+                final int baseSymbol = symbols.id(baseToken);
+                if (baseSymbol < joined.length) {
+                    for (int tc : joined[baseSymbol]) {
+                        match(tokenMatches, tc, vertex, vertexMatches);
+                    }
+                }
+            } else if (nearMatches != null) {
+                nearMatches.near(((SimpleToken) baseToken).getNormalized(), form -> {
+                    for (int tc : joined[form]) {
+                        match(tokenMatches, tc, vertex, vertexMatches);
+                    }
+                });
+            } else {
+                for (int tc = 0; tc < tokens.length; tc++) {
+                    if (comparator.compare(baseToken, tokens[tc]) == 0) {
+                        match(tokenMatches, tc, vertex, vertexMatches);
+                    }
+                }
+            }
+            if (vertexMatches[0] > 1) {
+                ambiguousInBase.add(vertex);
+            }
+        }
 
         // (have to check: base -> witness, and witness -> base)
-        final Set<Token> ambiguousInWitness = Stream.concat(
-                StreamUtil.stream(witnessTokens)
-                        .filter(t -> allMatches.getOrDefault(t, Collections.emptyList()).size() > 1),
-
-                allMatches.entrySet().stream()
-                        .filter(match -> match.getValue().stream().anyMatch(ambiguousInBase::contains))
-                        .map(Map.Entry::getKey)
-        ).collect(Collectors.toCollection(LinkedHashSet::new));
+        final Map<Token, List<VariantGraph.Vertex>> allMatches = new HashMap<>();
+        final Set<Token> unmatchedInWitness = new LinkedHashSet<>();
+        final Set<Token> ambiguousInWitness = new LinkedHashSet<>();
+        final Set<Token> uniqueInWitness = new LinkedHashSet<>();
+        for (int tc = 0; tc < tokens.length; tc++) {
+            final List<VariantGraph.Vertex> matches = tokenMatches[tc];
+            if (matches == null) {
+                unmatchedInWitness.add(tokens[tc]);
+                continue;
+            }
+            allMatches.put(tokens[tc], matches);
+            if (matches.size() > 1 || ambiguousInBase.contains(matches.get(0))) {
+                ambiguousInWitness.add(tokens[tc]);
+            } else {
+                uniqueInWitness.add(tokens[tc]);
+            }
+        }
+        return new Matches(allMatches, unmatchedInWitness, ambiguousInWitness, uniqueInWitness);
+    }
 
-        // sure tokens
-        // have to check unsure tokens because of (base -> witness && witness -> base)
-        final Set<Token> uniqueInWitness = StreamUtil.stream(witnessTokens)
-                .filter(t -> allMatches.getOrDefault(t, Collections.emptyList()).size() == 1 && !ambiguousInWitness.contains(t))
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+    private static void match(List<VariantGraph.Vertex>[] tokenMatches, int token, VariantGraph.Vertex vertex, int[] vertexMatches) {
+        if (tokenMatches[token] == null) {
+            tokenMatches[token] = new ArrayList<>(1);
+        }
+        tokenMatches[token].add(vertex);
+        vertexMatches[0]++;
+    }
 
-        return new Matches(allMatches, unmatchedInWitness, ambiguousInWitness, uniqueInWitness);
+    /**
+     * Buckets tokens by their keys.
+     *
+     * @param keys dense keys of the tokens, in the range <code>[0, keyCount)</code>
+     * @return the indexes of the tokens per key, in ascending order
+     */
+    private static int[][] buckets(int[] keys, int keyCount) {
+        final int[] counts = new int[keyCount];
+        for (int key : keys) {
+            counts[key]++;
+        }
+        final int[][] buckets = new int[keyCount][];
+        for (int kc = 0; kc < keyCount; kc++) {
+            buckets[kc] = new int[counts[kc]];
+            counts[kc] = 0;
+        }
+        for (int tc = 0; tc < keys.length; tc++) {
+            buckets[keys[tc]][counts[keys[tc]]++] = tc;
+        }
+        return buckets;
     }
 
     private Matches(Map<Token, List<VariantGraph.Vertex>> allMatches, Set<Token> unmatchedInWitness, Set<Token> ambiguousInWitness, Set<Token> uniqueInWitness) {
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.matching;
+
+import eu.interedition.collatex.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * An index of distinct strings, finding those within a given edit distance of a query without comparing the query
+ * to each of them.
+ * <p>
+ * Strings are indexed by their deletion neighborhoods: all strings derived from them by deleting up to <i>k</i>
+ * characters, where <i>k</i> is the maximum distance. Two strings are within edit distance <i>k</i> of each other only
+ * if their neighborhoods intersect, so the candidates for a query are looked up via its own neighborhood and then
+ * verified with a {@link EditDistance#compute(String, String, int) bounded} distance computation. As neighborhoods
+ * grow with the <i>k</i>-th power of the string length, only distances up to {@link #MAX_DISTANCE} are supported.
+ * <p>
+ * Strings are assigned dense ids in the order in which they are added. Indexes are not thread-safe.
+ */
+public class NearMatchIndex {
+
+    public static final int MAX_DISTANCE = 2;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final int maxDistance;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, int[]> neighborhoods = new HashMap<>();
+
+    private int[] visited = new int[16];
+    private int query;
+
+    public NearMatchIndex(int maxDistance) {
+        if (!isSupported(maxDistance)) {
+            throw new IllegalArgumentException(Integer.toString(maxDistance));
+        }
+        this.maxDistance = maxDistance;
+    }
+
+    public static boolean isSupported(int maxDistance) {
+        return (maxDistance >= 0 && maxDistance <= MAX_DISTANCE);
+    }
+
+    /**
+     * @return an index of the normalized forms of tokens matched by the given comparator, or <code>null</code> if it
+     *         does not match tokens by a supported edit distance
+     */
+    static NearMatchIndex of(Comparator<Token> comparator) {
+        if (comparator.getClass() == EditDistanceTokenComparator.class) {
+            final int threshold = ((EditDistanceTokenComparator) comparator).getThreshold();
+            return (isSupported(threshold) ? new NearMatchIndex(threshold) : null);
+        }
+        return null;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return the id of the given string, adding it to the index if it has not been added before
+     */
+    public int add(String string) {
+        final Integer id = ids.get(string);
+        if (id != null) {
+            return id;
+        }
+        final int newId = strings.size();
+        ids.put(string, newId);
+        strings.add(string);
+        for (String deletion : neighborhood(string)) {
+            final int[] stringIds = neighborhoods.get(deletion);
+            if (stringIds == null) {
+                neighborhoods.put(deletion, new int[] { newId });
+            } else {
+                final int[] extended = Arrays.copyOf(stringIds, stringIds.length + 1);
+                extended[stringIds.length] = newId;
+                neighborhoods.put(deletion, extended);
+            }
+        }
+        return newId;
+    }
+
+    /**
+     * @return the id of the given string, or <code>-1</code> if it has not been added
+     */
+    public int indexOf(String string) {
+        return ids.getOrDefault(string, -1);
+    }
+
+    public String get(int id) {
+        return strings.get(id);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * Passes the ids of all indexed strings within the maximum distance of the given one to the consumer, each id once
+     * and in no particular order.
+     */
+    public void near(String string, IntConsumer consumer) {
+        if (++query == 0) {
+            Arrays.fill(visited, 0);
+            query = 1;
+        }
+        if (visited.length < strings.size()) {
+            visited = Arrays.copyOf(visited, Math.max(strings.size(), visited.length * 2));
+        }
+        for (String deletion : neighborhood(string)) {
+            for (int id : neighborhoods.getOrDefault(deletion, NO_IDS)) {
+                if (visited[id] == query) {
+                    continue;
+                }
+                visited[id] = query;
+                if (EditDistance.compute(string, strings.get(id), maxDistance) <= maxDistance) {
+                    consumer.accept(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ids of all indexed strings within the maximum distance of the given one, in ascending order
+     */
+    public int[] near(String string) {
+        final List<Integer> near = new ArrayList<>();
+        near(string, near::add);
+        return near.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private Set<String> neighborhood(String string) {
+        final Set<String> neighborhood = new HashSet<>();
+        neighborhood.add(string);
+        Set<String> deletions = neighborhood;
+        for (int distance = 1; distance <= maxDistance; distance++) {
+            final Set<String> next = new HashSet<>();
+            for (String deletion : deletions) {
+                for (int cc = 0, cl = deletion.length(); cc < cl; cc++) {
+                    final String shorter = deletion.substring(0, cc) + deletion.substring(cc + 1);
+                    if (!neighborhood.contains(shorter)) {
+                        next.add(shorter);
+                    }
+                }
+            }
+            neighborhood.addAll(next);
+            deletions = next;
+        }
+        return neighborhood;
+    }
+}
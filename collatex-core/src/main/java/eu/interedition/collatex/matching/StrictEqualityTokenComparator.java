@@ -22,9 +22,7 @@ package eu.interedition.collatex.matching;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.simple.SimpleToken;
 
-import java.util.Comparator;
-
-public class StrictEqualityTokenComparator implements Comparator<Token> {
+public class StrictEqualityTokenComparator implements KeyedTokenComparator {
 
     @Override
     public int compare(Token base, Token witness) {
@@ -33,4 +31,9 @@ public class StrictEqualityTokenComparator implements Comparator<Token> {
         return baseContent.compareTo(witnessContent);
     }
 
+    @Override
+    public Object key(Token token) {
+        return ((SimpleToken) token).getContent();
+    }
+
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.matching;
+
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.simple.SimpleToken;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * A symbol table assigning dense ids to tokens, in the order in which they are first encountered, so that tokens which
+ * are equal according to a comparator share the same id.
+ * <p>
+ * Tokens of {@link KeyedTokenComparator keyed comparators}, which are consistent with the equality of some key like the
+ * normalized form of a token, are looked up by hashing that key. Tokens of {@link EditDistanceTokenComparator edit
+ * distance comparators} are looked up by hashing their normalized form as well, so that identical forms always share an
+ * id, while forms within the edit distance of each other get ids of their own; those are found via {@link #near(Token,
+ * IntConsumer)}. For all other comparators, tokens are looked up in a sorted map, comparing them once per lookup.
+ * <p>
+ * Only the ids of keyed comparators can replace the comparator when matching tokens (see {@link #isExact()}).
+ * <p>
+ * A symbol table is meant to live for at most the duration of one collation; it grows with every new token form and is
+ * not thread-safe. Within a collation, it also keeps the ids of the tokens in each vertex of the graph, so that the
+ * tokens of witnesses merged earlier are not looked up again for every further witness (see {@link #merged(int[],
+ * VariantGraph.Vertex[])}).
+ */
+public class TokenSymbols {
+
+    private final Function<Token, ?> key;
+    private final boolean exact;
+    private final Map<Object, Integer> ids;
+    private final Map<VariantGraph.Vertex, int[]> vertexIds = new HashMap<>();
+    private int size;
+
+    // the maximum edit distance of near forms, and an index of the forms if the distance is supported by one
+    private final int distance;
+    private final NearMatchIndex forms;
+    private int[] formIds = new int[16];
+
+    @SuppressWarnings("unchecked")
+    public TokenSymbols(Comparator<Token> comparator) {
+        final Function<Token, ?> keyed = KeyedTokenComparator.keyOf(comparator);
+        if (keyed != null) {
+            this.key = keyed;
+            this.exact = true;
+            this.distance = -1;
+        } else if (comparator.getClass() == EditDistanceTokenComparator.class) {
+            this.key = token -> ((SimpleToken) token).getNormalized();
+            this.exact = false;
+            this.distance = ((EditDistanceTokenComparator) comparator).getThreshold();
+        } else {
+            this.key = null;
+            this.exact = false;
+            this.distance = -1;
+        }
+        this.ids = (key == null ? new TreeMap<>((Comparator<Object>) (Comparator<?>) comparator) : new HashMap<>());
+        this.forms = (distance > 0 ? NearMatchIndex.of(comparator) : null);
+    }
+
+    /**
+     * @return <code>true</code> if two tokens have the same id if and only if the comparator deems them equal
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return <code>true</code> if tokens with different ids may still be equal according to the comparator, as they
+     *         are within its edit distance of each other (see {@link #near(Token, IntConsumer)})
+     */
+    public boolean hasNearIds() {
+        return distance > 0;
+    }
+
+    public int id(Token token) {
+        final Object symbol = (key == null ? token : key.apply(token));
+        final Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        ids.put(symbol, size);
+        if (forms != null) {
+            final int form = forms.add((String) symbol);
+            if (form == formIds.length) {
+                formIds = Arrays.copyOf(formIds, form * 2);
+            }
+            formIds[form] = size;
+        }
+        return size++;
+    }
+
+    /**
+     * Passes the ids of all tokens whose normalized forms differ from the one of the given token, but are within the edit
+     * distance of the comparator, to the consumer; each id once and in no particular order. Only ids of tokens which have
+     * been looked up before are passed.
+     */
+    public void near(Token token, IntConsumer consumer) {
+        if (!hasNearIds()) {
+            return;
+        }
+        final String form = ((SimpleToken) token).getNormalized();
+        if (forms != null) {
+            forms.near(form, near -> {
+                if (!form.equals(forms.get(near))) {
+                    consumer.accept(formIds[near]);
+                }
+            });
+            return;
+        }
+        for (Map.Entry<Object, Integer> id : ids.entrySet()) {
+            final String nearForm = (String) id.getKey();
+            if (!form.equals(nearForm) && EditDistance.compute(form, nearForm, distance) <= distance) {
+                consumer.accept(id.getValue());
+            }
+        }
+    }
+
+    public int[] ids(Token[] tokens) {
+        final int[] ids = new int[tokens.length];
+        for (int tc = 0; tc < tokens.length; tc++) {
+            ids[tc] = id(tokens[tc]);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the distinct ids of the tokens in the given vertex, in the order of its tokens
+     */
+    public int[] ids(VariantGraph.Vertex vertex) {
+        int[] ids = vertexIds.get(vertex);
+        if (ids == null) {
+            ids = vertex.tokens().stream().mapToInt(this::id).distinct().toArray();
+            vertexIds.put(vertex, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Records the ids of witness tokens which have been merged into the graph, so that the ids of the vertices they
+     * have been merged into stay current without looking up their tokens again.
+     *
+     * @param ids      the ids of the tokens of the witness, indexed by token position
+     * @param vertices the vertices the tokens have been merged into, indexed by token position
+     */
+    public void merged(int[] ids, VariantGraph.Vertex[] vertices) {
+        for (int tc = 0; tc < ids.length; tc++) {
+            final int[] known = vertexIds.get(vertices[tc]);
+            if (known == null) {
+                vertexIds.put(vertices[tc], new int[] { ids[tc] });
+            } else if (!contains(known, ids[tc])) {
+                final int[] extended = Arrays.copyOf(known, known.length + 1);
+                extended[known.length] = ids[tc];
+                vertexIds.put(vertices[tc], extended);
+            }
+        }
+    }
+
+    /**
+     * @return a new id, which is not assigned to any token
+     */
+    public int unique() {
+        return size++;
+    }
+
+    /**
+     * @return the number of ids assigned so far
+     */
+    public int size() {
+        return size;
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int candidate : ids) {
+            if (candidate == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -22,6 +22,7 @@ package eu.interedition.collatex.medite;
 import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.matching.KeyedTokenComparator;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 import eu.interedition.collatex.util.VertexMatch;
@@ -51,7 +52,7 @@ public class MediteAlgorithm extends CollationAlgorithm.Base {
         final VariantGraph.Vertex[][] vertices = VariantGraphRanking.of(graph).asArray();
         final Token[] tokens = StreamUtil.stream(witness).toArray(Token[]::new);
 
-        final SuffixTree<Token> suffixTree = SuffixTree.build(comparator, tokens);
+        final SuffixTree<Token> suffixTree = SuffixTree.build(comparator, KeyedTokenComparator.keyOf(comparator), tokens);
         final MatchEvaluatorWrapper matchEvaluator = new MatchEvaluatorWrapper(this.matchEvaluator, tokens);
 
         final Matches matchCandidates = Matches.between(vertices, suffixTree, matchEvaluator);
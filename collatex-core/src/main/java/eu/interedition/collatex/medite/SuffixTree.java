@@ -25,36 +25,62 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
+ * A suffix tree of a sequence of symbols, which are compared via a comparator.
+ * <p>
+ * If the comparator is consistent with the equality of some key of the symbols, the children of nodes with many of
+ * them are indexed by the key of their first symbol, so that the child continuing a path is found by hashing instead of
+ * comparing the next symbol to each child in turn.
+ *
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  */
 class SuffixTree<T> {
 
+    static final int INDEXED_CHILDREN = 8;
+
+    private static final Object SENTINEL = new Object();
+
     final Comparator<T> comparator;
     final Comparator<Integer> sourceComparator;
+    final Function<? super T, ?> key;
     final T[] source;
     final Node root;
 
     @SafeVarargs
     static <T> SuffixTree<T> build(Comparator<T> comparator, T... source) {
-        return new SuffixTree<>(comparator, source).build();
+        return build(comparator, null, source);
     }
 
-    @SafeVarargs
-    private SuffixTree(Comparator<T> comparator, T... source) {
+    /**
+     * @param key the key of symbols, whose equality is consistent with the comparator, or <code>null</code> if there is
+     *            none
+     */
+    static <T> SuffixTree<T> build(Comparator<T> comparator, Function<? super T, ?> key, T[] source) {
+        return new SuffixTree<>(comparator, key, source).build();
+    }
+
+    private SuffixTree(Comparator<T> comparator, Function<? super T, ?> key, T[] source) {
         this.comparator = comparator;
         this.sourceComparator = new SentinelAwareComparator(comparator);
+        this.key = key;
         this.source = source;
         this.root = new Node();
     }
 
+    private Object keyOf(int index) {
+        return (index == source.length ? SENTINEL : key.apply(source[index]));
+    }
+
     public Cursor cursor() {
         return new Cursor();
     }
@@ -95,6 +121,7 @@ class SuffixTree<T> {
                 final Node firstGrandChild = child.children.iterator().next();
                 child.incomingLabel.add(firstGrandChild.incomingLabel.getFirst());
                 child.children = firstGrandChild.children;
+                child.childrenByKey = firstGrandChild.childrenByKey;
                 for (Node formerGrandchild : child.children) {
                     formerGrandchild.parent = child;
                 }
@@ -124,6 +151,7 @@ class SuffixTree<T> {
 
         Node parent;
         List<Node> children = new ArrayList<>();
+        Map<Object, Node> childrenByKey;
 
         public Node(Node parent, int firstIndex) {
             this.parent = parent;
@@ -149,26 +177,71 @@ class SuffixTree<T> {
         }
 
         private Node addSuffix(Node node, int start) {
-            for (Node child : node.children) {
-                EquivalenceClass childClass = child.incomingLabel.getFirst();
-                if (childClass.isMember(start)) {
-                    childClass.add(start);
-                    start++;
-                    if (start == (source.length + 1)) {
-                        return child;
-                    }
-                    return addSuffix(child, start);
+            final Node child = node.child(start);
+            if (child != null) {
+                child.incomingLabel.getFirst().add(start);
+                start++;
+                if (start == (source.length + 1)) {
+                    return child;
                 }
+                return addSuffix(child, start);
             }
             while (start <= source.length) {
-                Node child = new Node(node, start);
-                node.children.add(child);
-                node = child;
+                final Node newChild = new Node(node, start);
+                node.addChild(newChild, start);
+                node = newChild;
                 start++;
             }
             return node;
         }
 
+        /**
+         * @return the child whose incoming label starts with the symbol at the given index, or <code>null</code>
+         */
+        Node child(int index) {
+            if (key != null && indexChildren()) {
+                return childrenByKey.get(keyOf(index));
+            }
+            for (Node child : children) {
+                if (child.incomingLabel.getFirst().isMember(index)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the child whose incoming label starts with the given symbol, or <code>null</code>
+         */
+        Node child(T symbol) {
+            if (key != null && indexChildren()) {
+                return childrenByKey.get(key.apply(symbol));
+            }
+            for (Node child : children) {
+                if (child.incomingLabel.getFirst().isMember(symbol)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node child, int index) {
+            children.add(child);
+            if (childrenByKey != null) {
+                childrenByKey.put(keyOf(index), child);
+            }
+        }
+
+        private boolean indexChildren() {
+            if (childrenByKey == null && children.size() >= INDEXED_CHILDREN) {
+                childrenByKey = new HashMap<>();
+                for (Node child : children) {
+                    childrenByKey.put(keyOf(child.incomingLabel.getFirst().members[0]), child);
+                }
+            }
+            return (childrenByKey != null);
+        }
+
         @Override
         public String toString() {
             return Optional.ofNullable(incomingLabel).map(label -> label.stream().map(Object::toString).collect(Collectors.joining(", "))).orElse("");
@@ -258,13 +331,8 @@ class SuffixTree<T> {
 
         public Cursor move(T symbol) {
             if (node.incomingLabel == null || (offset + 1) == node.incomingLabel.size()) {
-                for (Node child : node.children) {
-                    final Cursor next = new Cursor(child, 0);
-                    if (next.matchedClass().isMember(symbol)) {
-                        return next;
-                    }
-                }
-                return null;
+                final Node child = node.child(symbol);
+                return (child == null ? null : new Cursor(child, 0));
             }
             return (node.incomingLabel.get(offset + 1).isMember(symbol) ? new Cursor(node, offset + 1) : null);
         }
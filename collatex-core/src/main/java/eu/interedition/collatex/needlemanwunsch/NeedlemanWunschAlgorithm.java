@@ -22,6 +22,7 @@ package eu.interedition.collatex.needlemanwunsch;
 import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.matching.TokenSymbols;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
@@ -33,18 +34,6 @@ import java.util.*;
 public class NeedlemanWunschAlgorithm extends CollationAlgorithm.Base {
 
     private final Comparator<Token> comparator;
-    private final NeedlemanWunschScorer<VariantGraph.Vertex[], Token> scorer = new NeedlemanWunschScorer<VariantGraph.Vertex[], Token>() {
-
-        @Override
-        public float score(VariantGraph.Vertex[] a, Token b) {
-            return Arrays.stream(a).map(VariantGraph.Vertex::tokens).flatMap(Set::stream).anyMatch(t -> comparator.compare(t, b) == 0) ? 1 : -1;
-        }
-
-        @Override
-        public float gap() {
-            return -1;
-        }
-    };
 
     public NeedlemanWunschAlgorithm(Comparator<Token> comparator) {
         this.comparator = comparator;
@@ -52,28 +41,109 @@ public class NeedlemanWunschAlgorithm extends CollationAlgorithm.Base {
 
     @Override
     public void collate(VariantGraph against, Iterable<Token> witness) {
+        collate(against, witness, new TokenSymbols(comparator));
+    }
+
+    @Override
+    public void collate(VariantGraph against, List<? extends Iterable<Token>> witnesses) {
+        final TokenSymbols symbols = new TokenSymbols(comparator);
+        for (Iterable<Token> witness : witnesses) {
+            collate(against, witness, symbols);
+        }
+    }
+
+    private void collate(VariantGraph against, Iterable<Token> witness, TokenSymbols symbols) {
         final VariantGraph.Vertex[][] ranks = VariantGraphRanking.of(against).asArray();
         final Token[] tokens = StreamUtil.stream(witness).toArray(Token[]::new);
 
-        final Map<Token, VariantGraph.Vertex> alignments = new HashMap<>();
-        for (Map.Entry<VariantGraph.Vertex[], Token> alignment : align(ranks, tokens, scorer).entrySet()) {
-            boolean aligned = false;
-            final Token token = alignment.getValue();
-            for (VariantGraph.Vertex vertex : alignment.getKey()) {
-                for (Token vertexToken : vertex.tokens()) {
-                    if (comparator.compare(vertexToken, token) == 0) {
-                        alignments.put(token, vertex);
-                        aligned = true;
-                        break;
-                    }
+        final Scorer scorer = new Scorer(ranks, tokens, symbols);
+        final VariantGraph.Vertex[] alignments = new VariantGraph.Vertex[tokens.length];
+        for (Map.Entry<Integer, Integer> alignment : align(indexes(ranks.length), indexes(tokens.length), scorer).entrySet()) {
+            final int token = alignment.getValue();
+            alignments[token] = scorer.matchingVertex(alignment.getKey(), token);
+        }
+
+        merge(against, tokens, alignments);
+        if (scorer.tokenSymbols != null) {
+            symbols.merged(scorer.tokenSymbols, witnessTokenVertexArray());
+        }
+    }
+
+    private static Integer[] indexes(int length) {
+        final Integer[] indexes = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * Scores ranks of the graph against tokens of the witness, both given by their index. Tokens are compared by their
+     * symbols if the comparator permits it, and by the comparator otherwise. Symbols are assigned once per collation,
+     * so that the tokens of the graph are not looked up again for every witness, and no state is kept between
+     * collations.
+     */
+    private class Scorer implements NeedlemanWunschScorer<Integer, Integer> {
+
+        private final VariantGraph.Vertex[][] ranks;
+        private final Token[] tokens;
+        private final TokenSymbols symbols;
+        private final int[][] rankSymbols;
+        private final int[] tokenSymbols;
+
+        private Scorer(VariantGraph.Vertex[][] ranks, Token[] tokens, TokenSymbols symbols) {
+            this.ranks = ranks;
+            this.tokens = tokens;
+            this.symbols = symbols;
+            if (symbols.isExact()) {
+                this.rankSymbols = new int[ranks.length][];
+                for (int rc = 0; rc < ranks.length; rc++) {
+                    rankSymbols[rc] = Arrays.stream(ranks[rc]).map(symbols::ids).flatMapToInt(Arrays::stream).toArray();
                 }
-                if (aligned) {
-                    break;
+                this.tokenSymbols = symbols.ids(tokens);
+            } else {
+                this.rankSymbols = null;
+                this.tokenSymbols = null;
+            }
+        }
+
+        @Override
+        public float score(Integer rank, Integer token) {
+            if (rankSymbols != null) {
+                final int tokenSymbol = tokenSymbols[token];
+                for (int symbol : rankSymbols[rank]) {
+                    if (symbol == tokenSymbol) {
+                        return 1;
+                    }
                 }
+                return -1;
             }
+            return Arrays.stream(ranks[rank]).map(VariantGraph.Vertex::tokens).flatMap(Set::stream).anyMatch(t -> comparator.compare(t, tokens[token]) == 0) ? 1 : -1;
+        }
+
+        @Override
+        public float gap() {
+            return -1;
         }
 
-        merge(against, witness, alignments);
+        private VariantGraph.Vertex matchingVertex(int rank, int token) {
+            for (VariantGraph.Vertex vertex : ranks[rank]) {
+                if (rankSymbols != null) {
+                    for (int symbol : symbols.ids(vertex)) {
+                        if (symbol == tokenSymbols[token]) {
+                            return vertex;
+                        }
+                    }
+                    continue;
+                }
+                for (Token vertexToken : vertex.tokens()) {
+                    if (comparator.compare(vertexToken, tokens[token]) == 0) {
+                        return vertex;
+                    }
+                }
+            }
+            return null;
+        }
     }
 
     public static <A, B> Map<A, B> align(A[] a, B[] b, NeedlemanWunschScorer<A, B> scorer) {
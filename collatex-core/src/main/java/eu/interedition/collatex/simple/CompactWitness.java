@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.simple;
+
+import eu.interedition.collatex.Token;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A witness storing its tokens column-wise: the contents of all tokens are kept in a single text buffer and referred
+ * to by their offsets into it, while each distinct normalized form is kept once and referred to by its index.
+ * <p>
+ * Tokens are {@link SimpleToken simple tokens} created on demand as lightweight views of a position in the witness;
+ * there is at most one view per position, which shares its normalized form with all other tokens of the same form. The
+ * content of a view is extracted from the buffer whenever asked for, as only the output of a collation needs it. Views
+ * held on to during and after a collation, e.g. by a token index or a variant graph, thus retain no strings of their
+ * own.
+ */
+public class CompactWitness extends SimpleWitness {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String text = "";
+    private int[] contentOffsets = new int[1];
+    private String[] forms = new String[0];
+    private int[] formIndexes = new int[0];
+    private View[] views = new View[0];
+    private int size;
+
+    public CompactWitness(String sigil) {
+        super(sigil);
+    }
+
+    public CompactWitness(String sigil, String content) {
+        this(sigil, content, SimplePatternTokenizer.BY_WS_OR_PUNCT, SimpleTokenNormalizers.LC_TRIM_WS);
+    }
+
+    public CompactWitness(String sigil,
+                          String content,
+                          Function<String, Stream<String>> tokenizer,
+                          Function<String, String> normalizer) {
+        this(sigil);
+        setTokenContents(tokenizer.apply(content), normalizer);
+    }
+
+    @Override
+    public List<Token> getTokens() {
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException(Integer.toString(index));
+                }
+                return view(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return getTokens().iterator();
+    }
+
+    @Override
+    public void setTokenContents(Stream<String> tokenContents, Function<String, String> normalizer) {
+        final Builder builder = new Builder(INITIAL_CAPACITY);
+        tokenContents.forEachOrdered(content -> builder.append(content, normalizer.apply(content)));
+        builder.complete();
+    }
+
+    /**
+     * Copies the contents and normalized forms of the given tokens, which must be plain {@link SimpleToken simple
+     * tokens} or tokens of compact witnesses. The tokens themselves are not retained, so tokens of other subclasses are
+     * rejected rather than losing whatever else they carry.
+     *
+     * @throws IllegalArgumentException if a token is neither
+     */
+    @Override
+    public void setTokens(List<Token> tokens) {
+        final Builder builder = new Builder(tokens.size());
+        for (Token token : tokens) {
+            if (token == null || (token.getClass() != SimpleToken.class && !(token instanceof View))) {
+                throw new IllegalArgumentException(String.valueOf(token));
+            }
+            builder.append(((SimpleToken) token).getContent(), ((SimpleToken) token).getNormalized());
+        }
+        builder.complete();
+    }
+
+    @Override
+    public int indexOf(SimpleToken token) {
+        return (token instanceof View && token.witness == this ? token.position : -1);
+    }
+
+    /**
+     * @return the number of tokens of this witness
+     */
+    public int size() {
+        return size;
+    }
+
+    private View view(int position) {
+        View view = views[position];
+        if (view == null) {
+            // views of the same position created concurrently are equal, so that losing one of them is harmless
+            view = new View(this, position);
+            views[position] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Collects the contents of tokens in a contiguous buffer and their normalized forms in a table of distinct forms.
+     */
+    private class Builder {
+
+        private final StringBuilder contents = new StringBuilder();
+        private final Map<String, Integer> formIndex = new HashMap<>();
+        private String[] forms;
+        private int[] contentOffsets;
+        private int[] formIndexes;
+        private int size;
+
+        private Builder(int capacity) {
+            this.forms = new String[Math.max(capacity, 1)];
+            this.contentOffsets = new int[capacity + 1];
+            this.formIndexes = new int[capacity];
+        }
+
+        private void append(String content, String normalized) {
+            if (size == formIndexes.length) {
+                final int capacity = size + (size >> 1) + 1;
+                contentOffsets = Arrays.copyOf(contentOffsets, capacity + 1);
+                formIndexes = Arrays.copyOf(formIndexes, capacity);
+            }
+            Integer form = formIndex.get(normalized);
+            if (form == null) {
+                form = formIndex.size();
+                if (form == forms.length) {
+                    forms = Arrays.copyOf(forms, form + (form >> 1) + 1);
+                }
+                forms[form] = normalized;
+                formIndex.put(normalized, form);
+            }
+            formIndexes[size] = form;
+            contents.append(content);
+            contentOffsets[++size] = contents.length();
+        }
+
+        private void complete() {
+            CompactWitness.this.text = contents.toString();
+            CompactWitness.this.contentOffsets = Arrays.copyOf(contentOffsets, size + 1);
+            CompactWitness.this.forms = Arrays.copyOf(forms, formIndex.size());
+            CompactWitness.this.formIndexes = Arrays.copyOf(formIndexes, size);
+            CompactWitness.this.views = new View[size];
+            CompactWitness.this.size = size;
+        }
+    }
+
+    /**
+     * A token of a compact witness, referring to its content by its offsets and sharing its normalized form.
+     */
+    private static class View extends SimpleToken {
+
+        private View(CompactWitness witness, int position) {
+            super(witness, null, witness.forms[witness.formIndexes[position]]);
+            this.position = position;
+        }
+
+        @Override
+        public String getContent() {
+            final CompactWitness witness = (CompactWitness) this.witness;
+            return witness.text.substring(witness.contentOffsets[position], witness.contentOffsets[position + 1]);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof View) {
+                final View other = (View) obj;
+                return other.witness == witness && other.position == position;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(witness) * 31 + position;
+        }
+    }
+}
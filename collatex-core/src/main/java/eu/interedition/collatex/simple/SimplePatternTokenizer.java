@@ -19,14 +19,22 @@
 
 package eu.interedition.collatex.simple;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * Tokenizers splitting text into tokens which keep trailing whitespace and punctuation.
+ * <p>
+ * The predefined tokenizers do not use regular expressions but scan the text by hand, lazily yielding one token
+ * after the other. {@link #slices(CharSequence, Scanner)} exposes the underlying slices of the text, which are views
+ * and do not copy any characters.
+ *
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  * @author Ronald Haentjens Dekker
  */
@@ -37,18 +45,212 @@ public class SimplePatternTokenizer {
     static Function<String, Stream<String>> tokenizer(Pattern pattern) {
         return input -> {
             final Matcher matcher = pattern.matcher(input);
-            final List<String> tokens = new LinkedList<>();
-            while (matcher.find()) {
-                tokens.add(input.substring(matcher.start(), matcher.end()));
-            }
-            return tokens.stream();
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super String> action) {
+                    if (!matcher.find()) {
+                        return false;
+                    }
+                    action.accept(input.substring(matcher.start(), matcher.end()));
+                    return true;
+                }
+            }, false);
         };
     }
 
-    public static final Function<String, Stream<String>> BY_WHITESPACE = tokenizer(Pattern.compile("\\s*?\\S+\\s*]"));
+    public static Function<String, Stream<String>> tokenizer(Scanner scanner) {
+        return input -> slices(input, scanner).map(CharSequence::toString);
+    }
+
+    /**
+     * Lazily splits the given text into tokens found by the given scanner.
+     *
+     * @return views of the text, which only copy the characters of a token when converted to a string
+     */
+    public static Stream<CharSequence> slices(CharSequence text, Scanner scanner) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<CharSequence>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int offset = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super CharSequence> action) {
+                final int start = scanner.start(text, offset);
+                if (start < 0) {
+                    return false;
+                }
+                offset = scanner.end(text, start);
+                action.accept(new Slice(text, start, offset));
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * Finds tokens in a text, one after the other.
+     */
+    public interface Scanner {
+
+        /**
+         * @return the start of the next token at or after the given offset or <code>-1</code>, if there is none
+         */
+        int start(CharSequence text, int offset);
+
+        /**
+         * @return the end of the token starting at the given offset
+         */
+        int end(CharSequence text, int start);
+    }
+
+    /**
+     * Tokens of non-whitespace characters, with leading whitespace of the text and trailing whitespace.
+     */
+    public static final Scanner WHITESPACE = new SeparatorScanner() {
+        @Override
+        boolean isSeparator(char c) {
+            return isWhitespace(c);
+        }
+    };
+
+    /**
+     * Tokens of neither whitespace nor punctuation characters, with leading separators of the text and any trailing
+     * whitespace and punctuation.
+     */
+    public static final Scanner WS_AND_PUNCT = new SeparatorScanner() {
+        @Override
+        boolean isSeparator(char c) {
+            return isWhitespace(c) || isPunctuation(c);
+        }
+    };
+
+    /**
+     * Tokens of either punctuation or other non-whitespace characters, with trailing whitespace; leading whitespace of
+     * the text is skipped.
+     */
+    public static final Scanner WS_OR_PUNCT = new Scanner() {
+        @Override
+        public int start(CharSequence text, int offset) {
+            final int length = text.length();
+            while (offset < length && isWhitespace(text.charAt(offset))) {
+                offset++;
+            }
+            return (offset < length ? offset : -1);
+        }
+
+        @Override
+        public int end(CharSequence text, int start) {
+            final int length = text.length();
+            final boolean punctuation = isPunctuation(text.charAt(start));
+            int end = start + 1;
+            while (end < length && !isWhitespace(text.charAt(end)) && isPunctuation(text.charAt(end)) == punctuation) {
+                end++;
+            }
+            while (end < length && isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+    };
+
+    public static final Function<String, Stream<String>> BY_WHITESPACE = tokenizer(WHITESPACE);
+
+    public static final Function<String, Stream<String>> BY_WS_AND_PUNCT = tokenizer(WS_AND_PUNCT);
+
+    public static final Function<String, Stream<String>> BY_WS_OR_PUNCT = tokenizer(WS_OR_PUNCT);
+
+    /**
+     * Whitespace as matched by <code>\s</code> in regular expressions.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    static boolean isPunctuation(char c) {
+        switch (c) {
+            case '.':
+            case '?':
+            case '!':
+            case ',':
+            case ';':
+            case ':':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tokens consisting of non-separator characters surrounded by separators; separators at the beginning of the text
+     * are part of the first token.
+     */
+    private abstract static class SeparatorScanner implements Scanner {
+
+        abstract boolean isSeparator(char c);
+
+        @Override
+        public int start(CharSequence text, int offset) {
+            final int length = text.length();
+            for (int end = offset; end < length; end++) {
+                if (!isSeparator(text.charAt(end))) {
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int end(CharSequence text, int start) {
+            final int length = text.length();
+            int end = start;
+            while (isSeparator(text.charAt(end))) {
+                end++;
+            }
+            while (end < length && !isSeparator(text.charAt(end))) {
+                end++;
+            }
+            while (end < length && isSeparator(text.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * A token as a view of the text it has been found in.
+     */
+    private static final class Slice implements CharSequence {
+        private final CharSequence text;
+        private final int start;
+        private final int end;
 
-    public static final Function<String, Stream<String>> BY_WS_AND_PUNCT = tokenizer(Pattern.compile("[\\s" + PUNCT + "]*?[^\\s" + PUNCT + "]+[\\s" + PUNCT + "]*"));
+        private Slice(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
 
-    public static final Function<String, Stream<String>> BY_WS_OR_PUNCT = tokenizer(Pattern.compile("[" + PUNCT + "]+[\\s]*|[^" + PUNCT + "\\s]+[\\s]*"));
+        @Override
+        public int length() {
+            return end - start;
+        }
 
-}
\ No newline at end of file
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+            return new Slice(text, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
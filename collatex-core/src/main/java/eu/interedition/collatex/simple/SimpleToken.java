@@ -29,9 +29,10 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class SimpleToken implements Token, Comparable<SimpleToken> {
-    private final SimpleWitness witness;
+    final SimpleWitness witness;
     private final String content;
     private final String normalized;
+    int position = -1;
 
     public SimpleToken(SimpleWitness witness, String content, String normalized) {
         this.witness = witness;
@@ -52,9 +53,16 @@ public class SimpleToken implements Token, Comparable<SimpleToken> {
         return normalized;
     }
 
+    /**
+     * @return the position of this token in its witness or <code>-1</code>, if it has not been added to it
+     */
+    public int getPosition() {
+        return witness.indexOf(this);
+    }
+
     @Override
     public String toString() {
-        return witness.toString() + ":" + witness.getTokens().indexOf(this) + ":'" + normalized + "'";
+        return witness.toString() + ":" + getPosition() + ":'" + getNormalized() + "'";
     }
 
     public static String toString(Iterable<? extends Token> tokens) {
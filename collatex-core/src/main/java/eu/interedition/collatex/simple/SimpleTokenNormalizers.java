@@ -19,6 +19,8 @@
 
 package eu.interedition.collatex.simple;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -43,11 +45,26 @@ public class SimpleTokenNormalizers {
         return input.substring(start, end + 1);
     };
 
+    private static final boolean[] ASCII_WHITESPACE_OR_PUNCTUATION = new boolean[128];
+
+    static {
+        for (char c = 0; c < ASCII_WHITESPACE_OR_PUNCTUATION.length; c++) {
+            ASCII_WHITESPACE_OR_PUNCTUATION[c] = isWhitespaceOrPunctuation(Character.isWhitespace(c), Character.getType(c));
+        }
+    }
+
     public static boolean isWhitespaceOrPunctuation(char c) {
-        if (Character.isWhitespace(c)) {
+        if (c < ASCII_WHITESPACE_OR_PUNCTUATION.length) {
+            return ASCII_WHITESPACE_OR_PUNCTUATION[c];
+        }
+        return isWhitespaceOrPunctuation(Character.isWhitespace(c), Character.getType(c));
+    }
+
+    private static boolean isWhitespaceOrPunctuation(boolean whitespace, int type) {
+        if (whitespace) {
             return true;
         }
-        switch (Character.getType(c)) {
+        switch (type) {
             case Character.START_PUNCTUATION:
             case Character.END_PUNCTUATION:
             case Character.OTHER_PUNCTUATION:
@@ -57,6 +74,63 @@ public class SimpleTokenNormalizers {
         }
     }
 
+    /**
+     * Removes the characters matched by <code>\p{Punct}</code> in regular expressions, i.e. ASCII punctuation.
+     *
+     * @return the given string if it does not contain any such character
+     */
+    static String removeAsciiPunctuation(String input) {
+        final int length = input.length();
+        int c = 0;
+        while (c < length && !isAsciiPunctuation(input.charAt(c))) {
+            c++;
+        }
+        if (c == length) {
+            return input;
+        }
+        final StringBuilder result = new StringBuilder(length - 1).append(input, 0, c);
+        for (c++; c < length; c++) {
+            final char ch = input.charAt(c);
+            if (!isAsciiPunctuation(ch)) {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean isAsciiPunctuation(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+
+    public static final int MEMOIZED_FORMS = 1 << 16;
+
+    /**
+     * Caches the results of the given normalizer by surface form, which pays off as natural-language witnesses repeat
+     * the same forms over and over again. Once the cache holds the given number of forms, further forms are normalized
+     * without being cached.
+     * <p>
+     * The returned normalizer can be shared by concurrent threads; it is meant to be created for each collation, so that
+     * its cache does not outlive the witnesses.
+     */
+    public static Function<String, String> memoizing(Function<String, String> normalizer, int maximumSize) {
+        final Map<String, String> cache = new ConcurrentHashMap<>();
+        return input -> {
+            final String cached = cache.get(input);
+            if (cached != null) {
+                return cached;
+            }
+            final String normalized = normalizer.apply(input);
+            if (normalized != null && cache.size() < maximumSize) {
+                cache.putIfAbsent(input, normalized);
+            }
+            return normalized;
+        };
+    }
+
+    public static Function<String, String> memoizing(Function<String, String> normalizer) {
+        return memoizing(normalizer, MEMOIZED_FORMS);
+    }
+
     public static final Function<String, String> LC_TRIM_WS_PUNCT = LOWER_CASE.andThen(TRIM_WS_PUNCT);
 
     public static final Function<String, String> LC_TRIM_WS = LOWER_CASE.andThen(TRIM_WS);
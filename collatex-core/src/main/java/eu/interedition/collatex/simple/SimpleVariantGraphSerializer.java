@@ -19,6 +19,7 @@
 
 package eu.interedition.collatex.simple;
 
+import eu.interedition.collatex.CompactVariantGraph;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
@@ -38,6 +39,11 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
+ * Serializes variant graphs in various formats.
+ * <p>
+ * Serializing a {@link VariantGraph#freeze() frozen graph} only reads from it, so that frozen graphs can be
+ * serialized by multiple threads concurrently, each using its own serializer.
+ *
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  */
 public class SimpleVariantGraphSerializer {
@@ -54,7 +60,6 @@ public class SimpleVariantGraphSerializer {
     private final VariantGraph graph;
     private final Function<Iterable<Token>, String> tokensToString;
     private final Map<VariantGraph.Vertex, Integer> vertexIds = new HashMap<>();
-    private VariantGraphRanking ranking;
 
     public SimpleVariantGraphSerializer(VariantGraph graph) {
         this(graph, SIMPLE_TOKEN_TO_STRING);
@@ -235,6 +240,10 @@ public class SimpleVariantGraphSerializer {
     }
 
     private int numericId(VariantGraph.Vertex vertex) {
+        if (graph.isFrozen() && vertex instanceof CompactVariantGraph.Vertex) {
+            // frozen vertices are numbered in topological order already
+            return ((CompactVariantGraph.Vertex) vertex).id();
+        }
         Integer id = vertexIds.computeIfAbsent(vertex, k -> vertexIds.size());
         return id;
     }
@@ -252,10 +261,7 @@ public class SimpleVariantGraphSerializer {
     }
 
     VariantGraphRanking ranking() {
-        if (ranking == null) {
-            ranking = VariantGraphRanking.of(graph);
-        }
-        return ranking;
+        return VariantGraphRanking.of(graph);
     }
 
     Set<Tuple<VariantGraph.Vertex>> transposedTuples() {
@@ -29,7 +29,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class SimpleWitness implements Iterable<Token>, Witness, Comparator<SimpleToken> {
@@ -58,12 +57,44 @@ public class SimpleWitness implements Iterable<Token>, Witness, Comparator<Simpl
     }
 
     public void setTokenContents(Stream<String> tokenContents, Function<String, String> normalizer) {
-        setTokens(tokenContents.map(content -> new SimpleToken(SimpleWitness.this, content, normalizer.apply(content))).collect(Collectors.toList()));
+        this.tokens.clear();
+        tokenContents.map(content -> new SimpleToken(SimpleWitness.this, content, normalizer.apply(content))).forEachOrdered(this.tokens::add);
+        index();
     }
 
     public void setTokens(List<Token> tokens) {
         this.tokens.clear();
         this.tokens.addAll(tokens);
+        index();
+    }
+
+    /**
+     * @return the position of the given token in this witness or <code>-1</code>, if it is not part of it
+     */
+    public int indexOf(SimpleToken token) {
+        if (token.witness == this && isIndexed(token)) {
+            return token.position;
+        }
+        // the token list might have been modified directly; fall back to a search and index all tokens again
+        final int position = tokens.indexOf(token);
+        if (position >= 0 && token.witness == this) {
+            index();
+        }
+        return position;
+    }
+
+    private boolean isIndexed(SimpleToken token) {
+        final int position = token.position;
+        return position >= 0 && position < tokens.size() && tokens.get(position) == token;
+    }
+
+    private void index() {
+        for (int tc = 0, tl = tokens.size(); tc < tl; tc++) {
+            final Token token = tokens.get(tc);
+            if (token instanceof SimpleToken && ((SimpleToken) token).witness == this) {
+                ((SimpleToken) token).position = tc;
+            }
+        }
     }
 
     @Override
@@ -83,8 +114,8 @@ public class SimpleWitness implements Iterable<Token>, Witness, Comparator<Simpl
 
     @Override
     public int compare(SimpleToken o1, SimpleToken o2) {
-        final int o1Index = tokens.indexOf(o1);
-        final int o2Index = tokens.indexOf(o2);
+        final int o1Index = indexOf(o1);
+        final int o2Index = indexOf(o2);
         if (o1Index < 0) {
             throw new IllegalArgumentException(o1.toString());
         }
@@ -97,7 +128,7 @@ public class SimpleWitness implements Iterable<Token>, Witness, Comparator<Simpl
     public static final Pattern PUNCT = Pattern.compile("\\p{Punct}");
 
     public static final Function<String, String> TOKEN_NORMALIZER = input -> {
-        final String normalized = PUNCT.matcher(input.trim().toLowerCase()).replaceAll("");
+        final String normalized = SimpleTokenNormalizers.removeAsciiPunctuation(input.trim().toLowerCase());
         return (normalized == null || normalized.length() == 0 ? input : normalized);
     };
 
@@ -19,95 +19,111 @@
 
 package eu.interedition.collatex.simple;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-// we are going to use stax
-// previous version was build on DOM, which is not particularly well suited to parsing
-// large TEI files, with segments and expansions
+/**
+ * Builds witnesses from TEI documents marking up their tokens with <code>&lt;w/&gt;</code> and
+ * <code>&lt;seg/&gt;</code> elements, in a single pass with a cursor over the document.
+ * <p>
+ * The content of a token is the text of its element, including the text of all descendants; the text of segments is
+ * trimmed text node by text node, so that line breaks and indentation within segments are dropped. Text outside of tokens is
+ * ignored.
+ */
 public class SimpleWitnessTeiBuilder {
 
-    private static QName w = new QName("http://www.tei-c.org/ns/1.0", "w");
-    private static QName seg = new QName("http://www.tei-c.org/ns/1.0", "seg");
-    private static QName p = new QName("http://www.tei-c.org/ns/1.0", "p");
+    public static final String TEI_NAMESPACE = "http://www.tei-c.org/ns/1.0";
 
-    public SimpleWitness read(InputStream input) throws XMLStreamException {
-        SimpleWitness witness = new SimpleWitness("id");
-        List<String> tokenContents = new ArrayList<>();
-        XMLInputFactory factory = XMLInputFactory.newInstance();
-        XMLEventReader reader = factory.createXMLEventReader(input);
-        XMLEvent event = null;
-        int numberOfParagraphs = 0;
-        while ((event = reader.peek()) != null && numberOfParagraphs < 10) {
-            // System.out.println(event.toString());
-            if (event.isStartElement() && event.asStartElement().getName().equals(w)) {
-                tokenContents.add(handleWElement(reader));
-            } else if (event.isStartElement() && event.asStartElement().getName().equals(seg)) {
-                tokenContents.add(handleSegElement(reader));
-            } else if (event.isStartElement() && event.asStartElement().getName().equals(p)) {
-                reader.next();
-                numberOfParagraphs++;
-            } else {
-                reader.next();
-            }
+    private final String sigil;
+    private final int maxParagraphs;
+
+    /**
+     * Creates a builder reading whole documents into witnesses with the sigil <code>id</code>.
+     */
+    public SimpleWitnessTeiBuilder() {
+        this("id", Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxParagraphs the number of paragraphs (<code>&lt;p/&gt;</code>) after which documents are no longer read
+     */
+    public SimpleWitnessTeiBuilder(String sigil, int maxParagraphs) {
+        if (maxParagraphs < 0) {
+            throw new IllegalArgumentException(Integer.toString(maxParagraphs));
         }
-        witness.setTokenContents(tokenContents.stream(), SimpleTokenNormalizers.LC_TRIM_WS_PUNCT);
-        return witness;
+        this.sigil = sigil;
+        this.maxParagraphs = maxParagraphs;
     }
 
-    private static String handleWElement(XMLEventReader reader) throws XMLStreamException {
-        XMLEvent event = reader.nextEvent();
-        // Do what you need to do with the start element, e.g. initialize
-        // data structures
-        // System.out.println("W tag is triggered here!");
-        StringBuilder textBuffer = new StringBuilder();
-        while ((event = reader.peek()) != null) {
-            if (event.isEndElement() && event.asEndElement().getName().equals(w)) {
-                // Do what you need to do at the end, e.g. add data
-                // collected from sub elements, etc.
-                event = reader.nextEvent();
-                break;
+    public SimpleWitness read(InputStream input) throws XMLStreamException {
+        final List<String> tokenContents = new ArrayList<>();
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        final XMLStreamReader reader = factory.createXMLStreamReader(input);
+        try {
+            final StringBuilder tokenContent = new StringBuilder();
+            int paragraphs = 0;
+            int tokenDepth = 0;
+            boolean segment = false;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (tokenDepth > 0) {
+                            tokenDepth++;
+                        } else if (isTeiElement(reader, "w") || isTeiElement(reader, "seg")) {
+                            segment = "seg".equals(reader.getLocalName());
+                            tokenDepth = 1;
+                        } else if (isTeiElement(reader, "p") && ++paragraphs > maxParagraphs) {
+                            return witness(tokenContents);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (tokenDepth > 0 && --tokenDepth == 0) {
+                            tokenContents.add(tokenContent.toString());
+                            tokenContent.setLength(0);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (tokenDepth > 0) {
+                            append(tokenContent, reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(), segment);
+                        }
+                        break;
+                }
             }
-
-            // Do what you need to do for start or child elements, e.g.
-            // dispatch to another handler function
-            event = reader.nextEvent();
-            textBuffer.append(event.toString());
-            // System.out.println("Text :"+event.toString());
+            return witness(tokenContents);
+        } finally {
+            reader.close();
         }
+    }
 
-        return textBuffer.toString();
+    private SimpleWitness witness(List<String> tokenContents) {
+        final SimpleWitness witness = new SimpleWitness(sigil);
+        witness.setTokenContents(tokenContents.stream(), SimpleTokenNormalizers.memoizing(SimpleTokenNormalizers.LC_TRIM_WS_PUNCT));
+        return witness;
     }
 
-    private static String handleSegElement(XMLEventReader reader) throws XMLStreamException {
-        XMLEvent event = reader.nextEvent();
-        // Do what you need to do with the start element, e.g. initialize
-        // data structures
-        // System.out.println("Seg tag is triggered here!");
-        StringBuilder textBuffer = new StringBuilder();
-        while ((event = reader.peek()) != null) {
-            if (event.isEndElement() && event.asEndElement().getName().equals(seg)) {
-                // Do what you need to do at the end, e.g. add data
-                // collected from sub elements, etc.
-                event = reader.nextEvent();
-                break;
-            }
+    private static boolean isTeiElement(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName()) && TEI_NAMESPACE.equals(reader.getNamespaceURI());
+    }
 
-            // Do what you need to do for start or child elements, e.g.
-            // dispatch to another handler function
-            event = reader.nextEvent();
-            if (event.getEventType() == XMLEvent.CHARACTERS) {
-                textBuffer.append(event.toString().trim());
+    private static void append(StringBuilder buf, char[] text, int start, int length, boolean trim) {
+        int end = start + length;
+        if (trim) {
+            while (start < end && text[start] <= ' ') {
+                start++;
+            }
+            while (end > start && text[end - 1] <= ' ') {
+                end--;
             }
-
         }
-        return textBuffer.toString();
+        buf.append(text, start, end - start);
     }
 }
@@ -41,7 +41,12 @@ public enum Algorithm {
     /**
      * "Larrson-Sadakane qsufsort algorithm
      */
-    QSUFSORT("Larrson-Sadakane qsufsort algorithm");
+    QSUFSORT("Larrson-Sadakane qsufsort algorithm"),
+
+    /**
+     * Prefix doubling on the common fork/join pool.
+     */
+    PARALLEL_PREFIX_DOUBLING("Parallel prefix doubling");
 
     /**
      * Full name of the algorithm.
@@ -94,6 +99,9 @@ public enum Algorithm {
             case DEEP_SHALLOW:
                 return new DeepShallow();
 
+            case PARALLEL_PREFIX_DOUBLING:
+                return new ParallelPrefixDoubling();
+
         }
 
         throw new RuntimeException("No algorithm for constant: " + this);
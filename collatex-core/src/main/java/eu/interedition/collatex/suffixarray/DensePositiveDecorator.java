@@ -4,7 +4,8 @@ package eu.interedition.collatex.suffixarray;
  * A decorator around {@link ISuffixArrayBuilder} that accepts any input symbols and maps
  * it to non-negative, compact (dense) alphabet. Relative symbols order is preserved (changes are
  * limited to a constant shift and compaction of symbols). The input is remapped in-place,
- * but additional space is required for the mapping.
+ * but additional space is required for the mapping: a table spanning the range of input
+ * symbols or, for ranges larger than the input, the sorted distinct symbols.
  *
  * @author Michał Nowak (Carrot Search)
  * @author Dawid Weiss (Carrot Search)
@@ -26,11 +27,9 @@ public final class DensePositiveDecorator implements ISuffixArrayBuilder {
     public int[] buildSuffixArray(int[] input, final int start, final int length) {
         final MinMax minmax = Tools.minmax(input, start, length);
 
-        final ISymbolMapper mapper;
-        if (minmax.range() > 0x10000) {
-            throw new RuntimeException("Large symbol space not implemented yet.");
-        }
-        mapper = new DensePositiveMapper(input, start, length);
+        final ISymbolMapper mapper = ((long) minmax.max - minmax.min > Math.max(0x10000, length)
+            ? new SparsePositiveMapper(input, start, length)
+            : new DensePositiveMapper(input, start, length));
 
         mapper.map(input, start, length);
         try {
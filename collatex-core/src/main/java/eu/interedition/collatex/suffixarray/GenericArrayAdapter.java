@@ -41,14 +41,17 @@ class GenericArrayAdapter<T> {
         //System.out.println("Assigning token ids ...");
 
         /*
-         * We associate every token to an id, all `equal´ tokens to the same id.
+         * We associate every token to a dense id, all `equal´ tokens to the same id.
          * The suffix array is built using only the the ids.
          */
         tokIDs = new TreeMap<>(comparator);
 
         for (int i = 0; i < length; i++) {
-            tokIDs.putIfAbsent(tokens[i], i);
-            input[i] = tokIDs.get(tokens[i]);
+            Integer id = tokIDs.get(tokens[i]);
+            if (id == null) {
+                tokIDs.put(tokens[i], id = tokIDs.size());
+            }
+            input[i] = id;
         }
 
         //System.out.println("Token ids assigned.");
@@ -0,0 +1,355 @@
+package eu.interedition.collatex.suffixarray;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A suffix array builder sorting suffixes by prefix doubling on a fork/join pool, for
+ * inputs large enough to make use of several cores.
+ * <p>
+ * Suffixes are first sorted by their first symbol; in each following round, every group
+ * of suffixes still sharing a prefix of length <i>h</i> is sorted by the rank of the
+ * suffix <i>h</i> positions further on, doubling the length of sorted prefixes. Groups
+ * are independent of each other and sorted concurrently, large groups by a parallel merge
+ * sort. The result is the same as the one of any other builder; there are no constraints
+ * on the input symbols and no extra cells are required.
+ * <p>
+ * The builder also computes {@link #computeLCP(int[], int, int, int[]) LCP arrays} in
+ * parallel, via the permuted LCP array of the input.
+ */
+public final class ParallelPrefixDoubling implements ISuffixArrayBuilder {
+    /**
+     * Ranges smaller than this are processed by a single task.
+     */
+    static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private final ForkJoinPool pool;
+
+    /*
+     *
+     */
+    public ParallelPrefixDoubling() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /*
+     *
+     */
+    public ParallelPrefixDoubling(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned array has exactly <code>length</code> elements.
+     */
+    @Override
+    public int[] buildSuffixArray(final int[] input, final int start, final int length) {
+        Tools.assertAlways(input != null, "input must not be null");
+        Tools.assertAlways(input.length >= start + length, "input array is too short");
+
+        final int[] sa = new int[length];
+        final int[] rank = new int[length];
+        final long[] keys = new long[length];
+        final long[] buffer = new long[length];
+
+        // sort by first symbol; the low word of each key holds the suffix
+        parallel(0, length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = ((long) input[start + i] << 32) | i;
+            }
+        });
+        sort(keys, buffer, 0, length);
+
+        Groups groups = new Groups(1);
+        groups.split(sa, rank, keys, 0, length);
+
+        for (int h = 1; groups.size > 0 && h < length; h <<= 1) {
+            final int offset = h;
+            final Groups sorting = groups;
+            parallel(0, sorting.size, (from, to) -> {
+                for (int g = from; g < to; g++) {
+                    final int groupStart = sorting.starts[g];
+                    final int groupEnd = sorting.ends[g];
+                    for (int j = groupStart; j < groupEnd; j++) {
+                        final int suffix = sa[j];
+                        final int next = (suffix + offset < length ? rank[suffix + offset] + 1 : 0);
+                        keys[j] = ((long) next << 32) | suffix;
+                    }
+                    sort(keys, buffer, groupStart, groupEnd);
+                }
+            });
+
+            // ranks are only updated once all groups are sorted by the ranks of the last round
+            final Groups[] split = new Groups[sorting.size];
+            parallel(0, sorting.size, (from, to) -> {
+                final Groups subGroups = new Groups(Math.max(1, (to - from) * 2));
+                for (int g = from; g < to; g++) {
+                    subGroups.split(sa, rank, keys, sorting.starts[g], sorting.ends[g]);
+                }
+                split[from] = subGroups;
+            });
+            groups = Groups.concat(split);
+        }
+        return sa;
+    }
+
+    /**
+     * Computes the LCP array of the given suffix array like
+     * {@link SuffixArrays#computeLCP(int[], int, int, int[])} does.
+     * <p>
+     * The permuted LCP array, indexed by position in the input, is computed for chunks of
+     * the input in parallel, each chunk exploiting that the common prefix of a suffix is
+     * at most one shorter than the one of its predecessor in the input.
+     */
+    public int[] computeLCP(final int[] input, final int start, final int length, final int[] sa) {
+        final int[] plcp = new int[length];
+        parallel(0, length, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                plcp[sa[k]] = (k == 0 ? -1 : sa[k - 1]);
+            }
+        });
+        parallel(0, length, (from, to) -> {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                final int j = plcp[i];
+                if (j < 0) {
+                    h = 0;
+                    continue;
+                }
+                while (i + h < length && j + h < length && input[start + i + h] == input[start + j + h]) {
+                    h++;
+                }
+                plcp[i] = h;
+                if (h > 0) {
+                    h--;
+                }
+            }
+        });
+        final int[] lcp = new int[length];
+        parallel(0, length, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                lcp[k] = plcp[sa[k]];
+            }
+        });
+        return lcp;
+    }
+
+    private void sort(long[] keys, long[] buffer, int from, int to) {
+        if (to - from < SEQUENTIAL_THRESHOLD) {
+            Arrays.sort(keys, from, to);
+        } else if (ForkJoinTask.getPool() == pool) {
+            new MergeSort(keys, buffer, from, to).invoke();
+        } else {
+            pool.invoke(new MergeSort(keys, buffer, from, to));
+        }
+    }
+
+    private void parallel(int from, int to, RangeAction action) {
+        if (to - from <= SEQUENTIAL_THRESHOLD) {
+            action.apply(from, to);
+        } else {
+            pool.invoke(new Range(from, to, action));
+        }
+    }
+
+    private interface RangeAction {
+        void apply(int from, int to);
+    }
+
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final RangeAction action;
+
+        private Range(int from, int to, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                action.apply(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle, action), new Range(middle, to, action));
+        }
+    }
+
+    private static final class MergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final long[] buffer;
+        private final int from;
+        private final int to;
+
+        private MergeSort(long[] keys, long[] buffer, int from, int to) {
+            this.keys = keys;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(keys, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new MergeSort(keys, buffer, from, middle), new MergeSort(keys, buffer, middle, to));
+            new Merge(keys, buffer, from, middle, middle, to, from).invoke();
+            new Range(from, to, (start, end) -> System.arraycopy(buffer, start, keys, start, end - start)).invoke();
+        }
+    }
+
+    /**
+     * Merges two sorted ranges of keys into the buffer, splitting large merges in two at the
+     * middle key of the larger range and its position in the smaller one, as found by binary
+     * search.
+     */
+    private static final class Merge extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final long[] buffer;
+        private final int leftFrom;
+        private final int leftTo;
+        private final int rightFrom;
+        private final int rightTo;
+        private final int target;
+
+        private Merge(long[] keys, long[] buffer, int leftFrom, int leftTo, int rightFrom, int rightTo, int target) {
+            this.keys = keys;
+            this.buffer = buffer;
+            this.leftFrom = leftFrom;
+            this.leftTo = leftTo;
+            this.rightFrom = rightFrom;
+            this.rightTo = rightTo;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            final int leftLength = leftTo - leftFrom;
+            final int rightLength = rightTo - rightFrom;
+            if (leftLength + rightLength < SEQUENTIAL_THRESHOLD) {
+                merge();
+                return;
+            }
+            // keys of the left range precede equal keys of the right range
+            final int leftSplit;
+            final int rightSplit;
+            if (leftLength >= rightLength) {
+                leftSplit = (leftFrom + leftTo) >>> 1;
+                rightSplit = search(keys, rightFrom, rightTo, keys[leftSplit], false);
+            } else {
+                rightSplit = (rightFrom + rightTo) >>> 1;
+                leftSplit = search(keys, leftFrom, leftTo, keys[rightSplit], true);
+            }
+            invokeAll(new Merge(keys, buffer, leftFrom, leftSplit, rightFrom, rightSplit, target),
+                      new Merge(keys, buffer, leftSplit, leftTo, rightSplit, rightTo,
+                                target + (leftSplit - leftFrom) + (rightSplit - rightFrom)));
+        }
+
+        private void merge() {
+            int left = leftFrom;
+            int right = rightFrom;
+            int position = target;
+            while (left < leftTo && right < rightTo) {
+                buffer[position++] = (keys[left] <= keys[right] ? keys[left++] : keys[right++]);
+            }
+            System.arraycopy(keys, left, buffer, position, leftTo - left);
+            position += leftTo - left;
+            System.arraycopy(keys, right, buffer, position, rightTo - right);
+        }
+
+        /**
+         * @return the position of the first key in the given sorted range which is greater than
+         *         the given one, or also equal to it if <code>inclusive</code> is not set
+         */
+        private static int search(long[] keys, int from, int to, long key, boolean inclusive) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (keys[middle] < key || (inclusive && keys[middle] == key)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Ranges of the suffix array whose suffixes are not sorted yet.
+     */
+    private static final class Groups {
+        private int[] starts;
+        private int[] ends;
+        private int size;
+
+        private Groups(int capacity) {
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+        }
+
+        /**
+         * Stores the suffixes of a sorted range of keys, ranks them by the start of the
+         * subrange of suffixes with the same sort key and collects subranges of more than
+         * one suffix.
+         */
+        private void split(int[] sa, int[] rank, long[] keys, int from, int to) {
+            int head = from;
+            for (int j = from; j < to; j++) {
+                sa[j] = (int) keys[j];
+                if (j > from && (keys[j] >>> 32) != (keys[j - 1] >>> 32)) {
+                    add(head, j);
+                    head = j;
+                }
+                rank[sa[j]] = head;
+            }
+            add(head, to);
+        }
+
+        private void add(int start, int end) {
+            if (end - start < 2) {
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        private static Groups concat(Groups[] split) {
+            int size = 0;
+            for (Groups groups : split) {
+                size += (groups == null ? 0 : groups.size);
+            }
+            final Groups concatenated = new Groups(Math.max(1, size));
+            for (Groups groups : split) {
+                if (groups != null) {
+                    System.arraycopy(groups.starts, 0, concatenated.starts, concatenated.size, groups.size);
+                    System.arraycopy(groups.ends, 0, concatenated.ends, concatenated.size, groups.size);
+                    concatenated.size += groups.size;
+                }
+            }
+            return concatenated;
+        }
+    }
+}
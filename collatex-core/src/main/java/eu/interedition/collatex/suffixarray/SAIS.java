@@ -598,6 +598,9 @@ public final class SAIS implements ISuffixArrayBuilder {
     public int[] buildSuffixArray(int[] input, int start, int length) {
         // TODO: [dw] add constraints here.
         final int[] SA = new int[length];
+        if (length == 0) {
+            return SA;
+        }
         MinMax mm = Tools.minmax(input, start, length);
         suffixsort(input, SA, length, mm.max + 1);
         return SA;
@@ -0,0 +1,49 @@
+package eu.interedition.collatex.suffixarray;
+
+import java.util.Arrays;
+
+/**
+ * In the "sparse" scenario the range of input symbols is too large for a table indexed
+ * by symbol, so the distinct symbols are collected in a sorted array instead and keys
+ * are assigned by their position in it. Mapping takes a binary search per symbol, restoring
+ * the original values is a lookup.
+ */
+final class SparsePositiveMapper implements ISymbolMapper {
+    private final int[] symbols;
+
+    /*
+     *
+     */
+    public SparsePositiveMapper(int[] input, int start, int length) {
+        final int[] sorted = Arrays.copyOfRange(input, start, start + length);
+        Arrays.sort(sorted);
+
+        int k = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (k == 0 || sorted[i] != sorted[k - 1]) {
+                sorted[k++] = sorted[i];
+            }
+        }
+        this.symbols = Arrays.copyOf(sorted, k);
+    }
+
+    /*
+     *
+     */
+    @Override
+    public void map(int[] input, final int start, final int length) {
+        for (int i = start, l = length; l > 0; l--, i++) {
+            input[i] = Arrays.binarySearch(symbols, input[i]) + 1;
+        }
+    }
+
+    /*
+     *
+     */
+    @Override
+    public void undo(int[] input, final int start, final int length) {
+        for (int i = start, l = length; l > 0; l--, i++) {
+            input[i] = symbols[input[i] - 1];
+        }
+    }
+}
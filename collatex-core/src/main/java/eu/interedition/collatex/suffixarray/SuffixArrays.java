@@ -32,7 +32,7 @@ public final class SuffixArrays {
     /**
      * Maximum required trailing space in the input array (certain algorithms need it).
      */
-    final static int MAX_EXTRA_TRAILING_SPACE = DeepShallow.OVERSHOOT;
+    public final static int MAX_EXTRA_TRAILING_SPACE = DeepShallow.OVERSHOOT;
 
     /*
      *
@@ -89,12 +89,15 @@ public final class SuffixArrays {
 
     /**
      * Create a suffix array and an LCP array for a given input sequence of symbols and a
-     * custom suffix array building strategy.
+     * custom suffix array building strategy. The LCP array is computed in parallel, if the
+     * builder is a {@link ParallelPrefixDoubling parallel one}.
      */
     public static SuffixData createWithLCP(int[] input, int start, int length,
                                            ISuffixArrayBuilder builder) {
         final int[] sa = builder.buildSuffixArray(input, start, length);
-        final int[] lcp = computeLCP(input, start, length, sa);
+        final int[] lcp = (builder instanceof ParallelPrefixDoubling
+            ? ((ParallelPrefixDoubling) builder).computeLCP(input, start, length, sa)
+            : computeLCP(input, start, length, sa));
         return new SuffixData(sa, lcp);
     }
 
@@ -22,6 +22,7 @@ package eu.interedition.collatex.util;
 import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.matching.TokenSymbols;
 
 import java.util.*;
 
@@ -55,6 +56,15 @@ public class GreedyStringTilingAlgorithm extends CollationAlgorithm.Base {
         }
     };
 
+    private static final Equality<int[], Integer> SYMBOL_EQUALITY = (a, b) -> {
+        for (int symbol : a) {
+            if (symbol == b) {
+                return true;
+            }
+        }
+        return false;
+    };
+
     public GreedyStringTilingAlgorithm(Comparator<Token> comparator, int minimumTileLength) {
         this.comparator = comparator;
         this.minimumTileLength = minimumTileLength;
@@ -62,11 +72,41 @@ public class GreedyStringTilingAlgorithm extends CollationAlgorithm.Base {
 
     @Override
     public void collate(VariantGraph graph, Iterable<Token> witness) {
+        collate(graph, witness, new TokenSymbols(comparator));
+    }
+
+    @Override
+    public void collate(VariantGraph graph, List<? extends Iterable<Token>> witnesses) {
+        // one symbol table per collation, so that the tokens of the graph are not looked up again for every witness
+        final TokenSymbols symbols = new TokenSymbols(comparator);
+        for (Iterable<Token> witness : witnesses) {
+            collate(graph, witness, symbols);
+        }
+    }
+
+    private void collate(VariantGraph graph, Iterable<Token> witness, TokenSymbols symbols) {
         final VariantGraph.Vertex[][] vertices = VariantGraphRanking.of(graph).asArray();
         final Token[] tokens = StreamUtil.stream(witness).toArray(Token[]::new);
 
+        final SortedSet<Match> tiles;
+        final int[] tokenSymbols = (symbols.isExact() ? symbols.ids(tokens) : null);
+        if (tokenSymbols != null) {
+            // compare the symbols of the first token of every vertex in a rank
+            final int[][] rankSymbols = new int[vertices.length][];
+            for (int rc = 0; rc < vertices.length; rc++) {
+                rankSymbols[rc] = Arrays.stream(vertices[rc])
+                        .map(symbols::ids)
+                        .filter(ids -> ids.length > 0)
+                        .mapToInt(ids -> ids[0])
+                        .toArray();
+            }
+            tiles = match(rankSymbols, Arrays.stream(tokenSymbols).boxed().toArray(Integer[]::new), SYMBOL_EQUALITY, minimumTileLength);
+        } else {
+            tiles = match(vertices, tokens, equality, minimumTileLength);
+        }
+
         final SortedSet<SortedSet<VertexMatch.WithTokenIndex>> matches = new TreeSet<>(VertexMatch.<VertexMatch.WithTokenIndex>setComparator());
-        for (Match match : match(vertices, tokens, equality, minimumTileLength)) {
+        for (Match match : tiles) {
             final SortedSet<VertexMatch.WithTokenIndex> phrase = new TreeSet<>();
             for (int mc = 0, ml = match.length; mc < ml; mc++) {
                 final int rank = match.left + mc;
@@ -76,6 +116,9 @@ public class GreedyStringTilingAlgorithm extends CollationAlgorithm.Base {
         }
 
         merge(graph, vertices, tokens, matches);
+        if (tokenSymbols != null) {
+            symbols.merged(tokenSymbols, witnessTokenVertexArray());
+        }
     }
 
     public static <A, B> SortedSet<Match> match(A[] left, B[] right, Equality<A, B> equality, int minimumTileLength) {
@@ -24,8 +24,10 @@ import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.VariantGraph.Vertex;
 import eu.interedition.collatex.Witness;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -51,7 +53,18 @@ public class VariantGraphRanking implements Iterable<Set<VariantGraph.Vertex>>,
         this.graph = graph;
     }
 
+    /**
+     * @return the ranking maintained by the given graph, which reflects vertices and edges added to the graph later on
+     * @see VariantGraph#ranking()
+     */
     public static VariantGraphRanking of(VariantGraph graph) {
+        return graph.ranking();
+    }
+
+    /**
+     * Ranks the vertices of the given graph from scratch, independently of later modifications.
+     */
+    public static VariantGraphRanking compute(VariantGraph graph) {
         final VariantGraphRanking ranking = new VariantGraphRanking(graph);
         for (VariantGraph.Vertex v : graph.vertices()) {
             int rank = -1;
@@ -81,6 +94,43 @@ public class VariantGraphRanking implements Iterable<Set<VariantGraph.Vertex>>,
         return ranking;
     }
 
+    /**
+     * Adjusts the ranking to a new edge of the graph: the target vertex and the vertices downstream of it move up if
+     * the edge lengthens their longest path from the start vertex. Ranks of other vertices are left untouched.
+     */
+    public void connected(VariantGraph.Vertex from, VariantGraph.Vertex to) {
+        final Integer fromRank = byVertex.get(from);
+        if (fromRank == null) {
+            // not reachable yet; its successors will be ranked once it is
+            return;
+        }
+        final Deque<VariantGraph.Vertex> vertices = new ArrayDeque<>();
+        final Deque<Integer> ranks = new ArrayDeque<>();
+        vertices.push(to);
+        ranks.push(fromRank + 1);
+        while (!vertices.isEmpty()) {
+            final VariantGraph.Vertex vertex = vertices.pop();
+            final int rank = ranks.pop();
+            final Integer previousRank = byVertex.get(vertex);
+            if (previousRank != null) {
+                if (previousRank >= rank) {
+                    continue;
+                }
+                final Set<Vertex> previous = byRank.get(previousRank);
+                previous.remove(vertex);
+                if (previous.isEmpty()) {
+                    byRank.remove(previousRank);
+                }
+            }
+            byVertex.put(vertex, rank);
+            byRank.computeIfAbsent(rank, r -> new HashSet<>()).add(vertex);
+            for (VariantGraph.Vertex next : vertex.outgoing().keySet()) {
+                vertices.push(next);
+                ranks.push(rank + 1);
+            }
+        }
+    }
+
     public Set<Witness> witnesses() {
         return graph.witnesses();
     }
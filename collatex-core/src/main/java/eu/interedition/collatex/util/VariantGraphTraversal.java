@@ -44,44 +44,58 @@ public class VariantGraphTraversal implements Iterable<VariantGraph.Vertex> {
     return new VariantGraphTraversal(graph, null);
   }
 
+  /**
+   * Unfiltered traversals iterate over the topological order cached by the graph; traversals restricted to certain
+   * witnesses sort the graph anew.
+   */
   @Override
   public Iterator<VariantGraph.Vertex> iterator() {
-    return new Iterator<VariantGraph.Vertex>() {
-
-      private final Map<VariantGraph.Vertex, Long> encountered = new HashMap<>();
-      private final Queue<VariantGraph.Vertex> queue = new ArrayDeque<>();
-      private Optional<VariantGraph.Vertex> next = Optional.of(graph.getStart());
+    return (witnesses == null ? graph.vertices() : sort(graph, witnesses)).iterator();
+  }
 
-      @Override
-      public boolean hasNext() {
-        return next.isPresent();
-      }
+  /**
+   * Sorts the vertices of a graph topologically, starting at its start vertex and visiting vertices in the order in
+   * which all of their incoming edges have been followed.
+   *
+   * @param witnesses if not <code>null</code>, only edges of these witnesses are followed
+   */
+  public static List<VariantGraph.Vertex> sort(VariantGraph graph, Set<Witness> witnesses) {
+    final WitnessSet mask = (witnesses == null ? null : graph.witnessRegistry().lookup(witnesses));
+    final List<VariantGraph.Vertex> order = new ArrayList<>();
+    final Map<VariantGraph.Vertex, Integer> unvisitedIncoming = new HashMap<>();
+    final Queue<VariantGraph.Vertex> queue = new ArrayDeque<>();
 
-      @Override
-      public VariantGraph.Vertex next() {
-        final VariantGraph.Vertex next = this.next.get();
-        for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : next.outgoing().entrySet()) {
-          if (witnesses != null && edge.getValue().stream().noneMatch(witnesses::contains)) {
-            continue;
-          }
-          final VariantGraph.Vertex end = edge.getKey();
+    for (VariantGraph.Vertex next = graph.getStart(); next != null; next = queue.poll()) {
+      order.add(next);
+      for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : next.outgoing().entrySet()) {
+        if (mask != null && !mask.intersects(edge.getValue())) {
+          continue;
+        }
+        final VariantGraph.Vertex end = edge.getKey();
 
-          final long endEncountered = Optional.ofNullable(encountered.get(end)).orElse(0L);
-          final long endIncoming = end.incoming().entrySet().stream()//
-              .filter(e -> witnesses == null || e.getValue().stream().anyMatch(witnesses::contains))//
-              .count();
+        Integer incoming = unvisitedIncoming.get(end);
+        if (incoming == null) {
+          incoming = (mask == null ? end.incoming().size() : incoming(end, mask));
+        }
+        if (incoming == 0) {
+          throw new IllegalStateException(String.format("Encountered cycle traversing %s to %s", edge, end));
+        } else if (incoming == 1) {
+          queue.add(end);
+        }
 
-          if (endIncoming == endEncountered) {
-            throw new IllegalStateException(String.format("Encountered cycle traversing %s to %s", edge, end));
-          } else if ((endIncoming - endEncountered) == 1) {
-            queue.add(end);
-          }
+        unvisitedIncoming.put(end, incoming - 1);
+      }
+    }
+    return order;
+  }
 
-          encountered.put(end, endEncountered + 1);
-        }
-        this.next = Optional.ofNullable(queue.poll());
-        return next;
+  private static int incoming(VariantGraph.Vertex vertex, WitnessSet mask) {
+    int incoming = 0;
+    for (Set<Witness> label : vertex.incoming().values()) {
+      if (mask.intersects(label)) {
+        incoming++;
       }
-    };
+    }
+    return incoming;
   }
 }
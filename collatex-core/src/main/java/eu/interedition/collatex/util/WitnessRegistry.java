@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.util;
+
+import eu.interedition.collatex.Witness;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns small consecutive integers to witnesses, in the order in which they are first encountered, so that sets of
+ * them can be represented as {@link WitnessSet bitsets}.
+ * <p>
+ * Each variant graph has its own registry; witness sets of different registries can be compared and combined like any
+ * other set, but only sets of the same registry benefit from word-wise operations.
+ */
+public class WitnessRegistry {
+
+    private final Map<Witness, Integer> ids = new HashMap<>();
+    private final List<Witness> witnesses = new ArrayList<>();
+    private final WitnessSet empty = new WitnessSet(this, new long[0]);
+
+    public int register(Witness witness) {
+        final Integer id = ids.get(witness);
+        if (id != null) {
+            return id;
+        }
+        final int newId = witnesses.size();
+        ids.put(witness, newId);
+        witnesses.add(witness);
+        return newId;
+    }
+
+    /**
+     * @return the id of the given witness or <code>-1</code>, if it has not been registered
+     */
+    public int indexOf(Object witness) {
+        return ids.getOrDefault(witness, -1);
+    }
+
+    public Witness get(int id) {
+        return witnesses.get(id);
+    }
+
+    public int size() {
+        return witnesses.size();
+    }
+
+    public WitnessSet empty() {
+        return empty;
+    }
+
+    /**
+     * Converts the given witnesses into a set of this registry, registering witnesses not seen before.
+     */
+    public WitnessSet of(Collection<? extends Witness> witnesses) {
+        if (witnesses instanceof WitnessSet && ((WitnessSet) witnesses).registry == this) {
+            return (WitnessSet) witnesses;
+        }
+        if (witnesses.isEmpty()) {
+            return empty;
+        }
+        long[] words = new long[0];
+        for (Witness witness : witnesses) {
+            words = WitnessSet.set(words, register(witness));
+        }
+        return new WitnessSet(this, words);
+    }
+
+    /**
+     * Selects the registered ones among the given witnesses, without registering the others.
+     */
+    public WitnessSet lookup(Collection<?> witnesses) {
+        if (witnesses instanceof WitnessSet && ((WitnessSet) witnesses).registry == this) {
+            return (WitnessSet) witnesses;
+        }
+        long[] words = new long[0];
+        for (Object witness : witnesses) {
+            final int id = indexOf(witness);
+            if (id >= 0) {
+                words = WitnessSet.set(words, id);
+            }
+        }
+        return (words.length == 0 ? empty : new WitnessSet(this, words));
+    }
+
+    /**
+     * Unites the given witness sets, converting them into sets of this registry if need be.
+     */
+    public WitnessSet union(Iterable<? extends Set<Witness>> sets) {
+        WitnessSet union = empty;
+        for (Set<Witness> set : sets) {
+            union = union.union(of(set));
+        }
+        return union;
+    }
+}
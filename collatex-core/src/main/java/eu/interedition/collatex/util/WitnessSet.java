@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.util;
+
+import eu.interedition.collatex.Witness;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of witnesses, stored as a bitset over the ids of a {@link WitnessRegistry}.
+ * <p>
+ * Operations involving two sets of the same registry work on whole words; all other operations fall back to the
+ * general contract of {@link Set}, so that witness sets can be used wherever a <code>Set&lt;Witness&gt;</code> is
+ * expected.
+ */
+public final class WitnessSet extends AbstractSet<Witness> {
+
+    final WitnessRegistry registry;
+    private final long[] words;
+    private final int size;
+    private final int hashCode;
+
+    WitnessSet(WitnessRegistry registry, long[] words) {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            length--;
+        }
+        this.registry = registry;
+        this.words = (length == words.length ? words : Arrays.copyOf(words, length));
+
+        int size = 0;
+        int hashCode = 0;
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            size++;
+            hashCode += registry.get(id).hashCode();
+        }
+        this.size = size;
+        this.hashCode = hashCode;
+    }
+
+    public WitnessRegistry registry() {
+        return registry;
+    }
+
+    public WitnessSet union(WitnessSet other) {
+        if (other.registry != registry) {
+            return union(registry.of(other));
+        }
+        if (containsAll(other)) {
+            return this;
+        }
+        if (other.containsAll(this)) {
+            return other;
+        }
+        final long[] union = Arrays.copyOf(words, Math.max(words.length, other.words.length));
+        for (int w = 0; w < other.words.length; w++) {
+            union[w] |= other.words[w];
+        }
+        return new WitnessSet(registry, union);
+    }
+
+    /**
+     * @return <code>true</code> if this set and the given one have at least one witness in common
+     */
+    public boolean intersects(Set<?> other) {
+        if (other instanceof WitnessSet && ((WitnessSet) other).registry == registry) {
+            final long[] otherWords = ((WitnessSet) other).words;
+            for (int w = Math.min(words.length, otherWords.length) - 1; w >= 0; w--) {
+                if ((words[w] & otherWords[w]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Witness witness : this) {
+            if (other.contains(witness)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        final int id = registry.indexOf(o);
+        return id >= 0 && isSet(words, id);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof WitnessSet && ((WitnessSet) c).registry == registry) {
+            final long[] otherWords = ((WitnessSet) c).words;
+            if (otherWords.length > words.length) {
+                return false;
+            }
+            for (int w = 0; w < otherWords.length; w++) {
+                if ((otherWords[w] & ~words[w]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.containsAll(c);
+    }
+
+    @Override
+    public Iterator<Witness> iterator() {
+        return new Iterator<Witness>() {
+            private int next = nextId(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Witness next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                final Witness witness = registry.get(next);
+                next = nextId(next + 1);
+                return witness;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof WitnessSet && ((WitnessSet) o).registry == registry) {
+            return Arrays.equals(words, ((WitnessSet) o).words);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private int nextId(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    static boolean isSet(long[] words, int id) {
+        final int w = id >>> 6;
+        return w < words.length && (words[w] & (1L << id)) != 0;
+    }
+
+    static long[] set(long[] words, int id) {
+        final int w = id >>> 6;
+        if (w >= words.length) {
+            words = Arrays.copyOf(words, w + 1);
+        }
+        words[w] |= (1L << id);
+        return words;
+    }
+}
@@ -29,9 +29,11 @@ import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 import eu.interedition.collatex.util.VariantGraphTraversal;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -46,6 +48,13 @@ import static org.junit.Assert.fail;
 public abstract class AbstractTest {
     public static final char[] SIGLA = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
 
+    private static final int HEAP_SAMPLES = 16;
+
+    /**
+     * Enables benchmarks, which are skipped by default, e.g. via <code>mvn test -Dcollatex.benchmark</code>.
+     */
+    public static final String BENCHMARK_PROPERTY = "collatex.benchmark";
+
     protected final Logger LOG = Logger.getLogger(getClass().getName());
 
     protected CollationAlgorithm collationAlgorithm;
@@ -196,4 +205,33 @@ public abstract class AbstractTest {
         this.collationAlgorithm = collationAlgorithm;
     }
 
+    /**
+     * Skips the calling test unless benchmarks are enabled (see {@link #BENCHMARK_PROPERTY}).
+     */
+    protected static void assumeBenchmark() {
+        Assume.assumeTrue("Benchmarks are enabled by -D" + BENCHMARK_PROPERTY, System.getProperty(BENCHMARK_PROPERTY) != null);
+    }
+
+    /**
+     * Estimates the heap retained by the objects of the given supplier, averaged over several of them. Depends on the
+     * garbage collector, so only differences well beyond a few percent should be asserted.
+     */
+    protected static long heapPerInstance(Supplier<?> instances) {
+        final List<Object> retained = new ArrayList<>(HEAP_SAMPLES);
+        final long baseline = usedHeap();
+        for (int i = 0; i < HEAP_SAMPLES; i++) {
+            retained.add(instances.get());
+        }
+        final long used = usedHeap() - baseline;
+        retained.clear();
+        return used / HEAP_SAMPLES;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
@@ -24,11 +24,23 @@ import eu.interedition.collatex.simple.SimpleWitness;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphTraversal;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -55,6 +67,26 @@ public class VariantGraphTest extends AbstractTest {
         assertEquals(graph.getEnd(), vertices.get(5));
     }
 
+    @Test
+    public void cachedTopologicalOrder() {
+        final SimpleWitness[] w = createWitnesses("a b", "b");
+        final VariantGraph graph = collate(w[0]);
+        final Iterable<VariantGraph.Vertex> vertices = graph.vertices();
+        assertSame(vertices, graph.vertices());
+        assertEquals(4, StreamUtil.stream(vertices).count());
+
+        final VariantGraph.Vertex b = vertexWith(graph, "b", w[0]);
+        b.add(w[1].getTokens());
+        graph.connect(graph.getStart(), b, Collections.singleton(w[1]));
+        graph.connect(b, graph.getEnd(), Collections.singleton(w[1]));
+        assertNotSame(vertices, graph.vertices());
+        assertEquals(4, StreamUtil.stream(graph.vertices()).count());
+        assertEquals(3, StreamUtil.stream(VariantGraphTraversal.of(graph, Collections.singleton(w[1]))).count());
+
+        VariantGraph.JOIN.apply(graph);
+        assertEquals(4, StreamUtil.stream(graph.vertices()).count());
+    }
+
     @Test
     public void oneWitness() {
         final SimpleWitness[] w = createWitnesses("only one witness");
@@ -90,6 +122,46 @@ public class VariantGraphTest extends AbstractTest {
         assertEquals(graph.getEnd(), path.get(7));
     }
 
+    @Test
+    public void witnessSets() {
+        final SimpleWitness[] w = new SimpleWitness[70];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = new SimpleWitness("W" + i, i == w.length - 1 ? "a c" : "a b");
+        }
+        final VariantGraph graph = collate(w);
+
+        final Set<Witness> all = new HashSet<>(Arrays.asList(w));
+        assertEquals(all, graph.witnesses());
+        assertSame(graph.witnesses(), graph.witnesses());
+
+        final VariantGraph.Vertex a = vertexWith(graph, "a", w[0]);
+        final VariantGraph.Vertex c = vertexWith(graph, "c", w[w.length - 1]);
+        assertEquals(all, a.witnesses());
+        assertEquals(Collections.singleton(w[w.length - 1]), c.witnesses());
+        assertEquals(w.length - 1, edgeBetween(a, vertexWith(graph, "b", w[0])).size());
+        assertTrue(a.witnesses().containsAll(c.witnesses()));
+        assertFalse(c.witnesses().contains(w[0]));
+    }
+
+    @Test
+    public void internedTranspositions() {
+        final SimpleWitness[] w = createWitnesses("a b c");
+        final VariantGraph graph = collate(w);
+        final VariantGraph.Vertex a = vertexWith(graph, "a", w[0]);
+        final VariantGraph.Vertex b = vertexWith(graph, "b", w[0]);
+        final VariantGraph.Vertex c = vertexWith(graph, "c", w[0]);
+
+        final Set<VariantGraph.Vertex> ab = graph.transpose(new HashSet<>(Arrays.asList(a, b)));
+        final Set<VariantGraph.Vertex> bc = graph.transpose(new HashSet<>(Arrays.asList(b, c)));
+        assertSame(ab, graph.transpose(new HashSet<>(Arrays.asList(b, a))));
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), ab);
+        assertEquals(2, graph.transpositions().size());
+        assertEquals(new HashSet<>(Arrays.asList(ab, bc)), b.transpositions());
+        assertEquals(Collections.singleton(ab), a.transpositions());
+        assertTrue(c.transpositions().contains(bc));
+        assertFalse(c.transpositions().contains(ab));
+    }
+
     @Test
     public void transpositions1() {
         final VariantGraph graph = collate("the nice black and white cat", "the friendly white and black cat");
@@ -169,6 +241,91 @@ public class VariantGraphTest extends AbstractTest {
         assertHasWitnesses(edgeBetween(whiteVertex, catVertex), w[1]);
     }
 
+    @Test
+    public void joinCompactGraph() {
+        final SimpleWitness[] w = createWitnesses("The black dog chases a red cat.", "A red cat chases the black dog.", "A red cat chases the yellow dog");
+        final VariantGraph graph = VariantGraph.JOIN.apply(collate(w));
+        final VariantGraph compactGraph = new CompactVariantGraph();
+        collate(compactGraph, w);
+        VariantGraph.JOIN.apply(compactGraph);
+
+        assertEquals(toString(table(graph)), toString(table(compactGraph)));
+        assertEquals(graph.transpositions().size(), compactGraph.transpositions().size());
+        assertHasWitnesses(edgeBetween(vertexWith(compactGraph, "a red cat", w[1]), vertexWith(compactGraph, "chases", w[1])), w[1], w[2]);
+    }
+
+    @Test
+    public void compactGraphHeap() {
+        final SimpleWitness[] w = createWitnesses(
+            String.join(" ", Collections.nCopies(20, "The black dog chases a red cat.")),
+            String.join(" ", Collections.nCopies(20, "A red cat chases the black dog.")),
+            String.join(" ", Collections.nCopies(20, "A red cat chases the yellow dog")));
+        final String table = toString(table(collateInto(new VariantGraph(), w)));
+        assertEquals(table, toString(table(collateInto(new CompactVariantGraph(), w))));
+        assertEquals(table, toString(table(collateInto(new CompactVariantGraph(), w).freeze())));
+
+        LOG.log(Level.INFO, "Heap used by variant graph: {0} bytes; compact: {1} bytes; frozen: {2} bytes", new Object[]{
+            heapPerInstance(() -> collateInto(new VariantGraph(), w)),
+            heapPerInstance(() -> collateInto(new CompactVariantGraph(), w)),
+            heapPerInstance(() -> collateInto(new CompactVariantGraph(), w).freeze())
+        });
+    }
+
+    @Test
+    public void appendWitnessPath() {
+        final SimpleWitness[] w = createWitnesses("the black cat", "the white cat");
+        for (VariantGraph graph : Arrays.asList(new VariantGraph(), new CompactVariantGraph())) {
+            final VariantGraph.Vertex[] first = w[0].getTokens().stream().map(graph::add).toArray(VariantGraph.Vertex[]::new);
+            graph.append(w[0], first);
+            final VariantGraph.Vertex[] second = {first[0], graph.add(w[1].getTokens().get(1)), first[2]};
+            graph.append(w[1], second);
+
+            assertEquals(6, StreamUtil.stream(graph.vertices()).count());
+            assertFalse(graph.getStart().outgoing().containsKey(graph.getEnd()));
+            assertHasWitnesses(edgeBetween(graph.getStart(), first[0]), w[0], w[1]);
+            assertHasWitnesses(edgeBetween(first[0], first[1]), w[0]);
+            assertHasWitnesses(edgeBetween(second[1], first[2]), w[1]);
+            assertHasWitnesses(edgeBetween(first[2], graph.getEnd()), w[0], w[1]);
+            assertSame(edgeBetween(first[0], first[1]), edgeBetween(first[1], first[2]));
+            assertEquals(3, graph.ranking().apply(first[2]).intValue());
+        }
+    }
+
+    @Test
+    public void frozenGraph() throws Exception {
+        final SimpleWitness[] w = createWitnesses("The black dog chases a red cat.", "A red cat chases the black dog.", "A red cat chases the yellow dog");
+        final VariantGraph graph = VariantGraph.JOIN.apply(collate(w));
+        final VariantGraph frozen = graph.freeze();
+
+        assertTrue(frozen.isFrozen());
+        assertFalse(graph.isFrozen());
+        assertEquals(toString(table(graph)), toString(table(frozen)));
+        assertEquals(graph.transpositions().size(), frozen.transpositions().size());
+        try {
+            frozen.connect(frozen.getStart(), frozen.getEnd(), Collections.singleton(w[0]));
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> dots = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                dots.add(executor.submit(() -> {
+                    final StringWriter writer = new StringWriter();
+                    new SimpleVariantGraphSerializer(frozen).toDot(writer);
+                    return writer.toString();
+                }));
+            }
+            final String dot = dots.get(0).get();
+            for (Future<String> other : dots) {
+                assertEquals(dot, other.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void joinTwoDifferentWitnessesWithTranspositions() {
         final SimpleWitness[] w = createWitnesses("voor Zo nu en dan zin2 na voor", "voor zin2 Nu en dan voor");
@@ -197,4 +354,9 @@ public class VariantGraphTest extends AbstractTest {
         assertHasWitnesses(edgeBetween(zin2BVertex, nuendanVertex), w[1]);
         //    assertHasWitnesses(edgeBetween(nuendanVertex, voorVertex2), w[1]);
     }
+
+    private <G extends VariantGraph> G collateInto(G graph, SimpleWitness[] witnesses) {
+        collate(graph, witnesses);
+        return graph;
+    }
 }
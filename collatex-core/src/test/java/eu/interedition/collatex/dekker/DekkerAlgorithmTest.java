@@ -6,6 +6,7 @@ import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.dekker.island.Coordinate;
 import eu.interedition.collatex.dekker.island.Island;
+import eu.interedition.collatex.matching.EditDistanceTokenComparator;
 import eu.interedition.collatex.simple.SimpleWitness;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -141,6 +142,31 @@ public class DekkerAlgorithmTest extends AbstractTest {
         assertThat(g, graph(w[1]).aligned("the").non_aligned("red").aligned("cat"));
     }
 
+    // near matches must not chain: "harm" is near "hard" only, although "hard" is near "card", "card" near "cart" and
+    // "cart" near "cat"
+    @Test
+    public void testNearMatchesDoNotChain() {
+        final SimpleWitness[] w = createWitnesses("cat cart card hard", "harm");
+        DekkerAlgorithm aligner = new DekkerAlgorithm(new EditDistanceTokenComparator(1));
+        VariantGraph graph = new VariantGraph();
+        aligner.collate(graph, w);
+        List<SortedMap<Witness, Set<Token>>> t = table(graph);
+        assertEquals("|cat|cart|card|hard|", toString(t, w[0]));
+        assertEquals("| | | |harm|", toString(t, w[1]));
+    }
+
+    // identical forms are found as blocks, near forms as single tokens next to them
+    @Test
+    public void testNearMatchesBetweenBlocks() {
+        final SimpleWitness[] w = createWitnesses("the cat sat on the mat", "kat sat on a hat");
+        DekkerAlgorithm aligner = new DekkerAlgorithm(new EditDistanceTokenComparator(1));
+        VariantGraph graph = new VariantGraph();
+        aligner.collate(graph, w);
+        List<SortedMap<Witness, Set<Token>>> t = table(graph);
+        assertEquals("|the|cat|sat|on|the|mat|", toString(t, w[0]));
+        assertEquals("| |kat|sat|on|a|hat|", toString(t, w[1]));
+    }
+
     @Test
     public void testDifficultCase1TranspositionOrTwoReplacements() {
         final SimpleWitness[] w = createWitnesses("the cat and the dog", "the dog and the cat");
@@ -20,10 +20,15 @@
 package eu.interedition.collatex.dekker;
 
 import eu.interedition.collatex.AbstractTest;
+import eu.interedition.collatex.CollationAlgorithm;
+import eu.interedition.collatex.CollationAlgorithmFactory;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleWitness;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import org.junit.Test;
 
 import java.util.List;
@@ -53,6 +58,24 @@ public class VariantGraphRankerTest extends AbstractTest {
         assertEquals(5, (long) ranking.apply(vertices.get(6)));
     }
 
+    @Test
+    public void maintainedRanking() {
+        final SimpleWitness[] w = createWitnesses(//
+            "The black cat", "The black and white cat", "The white and black cat", "So the black cat", "The cat");
+        final VariantGraph graph = new VariantGraph();
+        final VariantGraphRanking ranking = graph.ranking();
+        final CollationAlgorithm progressive = CollationAlgorithmFactory.dekker(new EqualityTokenComparator());
+        for (SimpleWitness witness : w) {
+            progressive.collate(graph, witness);
+            assertSame(ranking, VariantGraphRanking.of(graph));
+            assertEquals(VariantGraphRanking.compute(graph).getByVertex(), ranking.getByVertex());
+            assertEquals(VariantGraphRanking.compute(graph).getByRank(), ranking.getByRank());
+        }
+
+        VariantGraph.JOIN.apply(graph);
+        assertEquals(VariantGraphRanking.compute(graph).getByVertex(), VariantGraphRanking.of(graph).getByVertex());
+    }
+
     @Test
     public void agastTranspositionHandling() {
         final VariantGraph graph = collate("He was agast, so", "He was agast", "So he was agast");
@@ -3,11 +3,20 @@ package eu.interedition.collatex.dekker.token_index;
 import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.Witness;
+import eu.interedition.collatex.matching.EditDistanceTokenComparator;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleToken;
 import eu.interedition.collatex.simple.SimpleWitness;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.ParallelPrefixDoubling;
+import eu.interedition.collatex.suffixarray.QSufSort;
+import eu.interedition.collatex.suffixarray.SAIS;
+import eu.interedition.collatex.suffixarray.Skew;
+import eu.interedition.collatex.suffixarray.SuffixArrays;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.logging.Level;
 
 import static org.junit.Assert.assertEquals;
 
@@ -50,6 +59,33 @@ public class TokenIndexTest extends AbstractTest {
         }
     }
 
+    /**
+     * @return dense positive symbols followed by the trailing space some builders require, as passed to builders by
+     *         {@link TokenIndex#prepare()}
+     */
+    private static int[] tokenSymbols(Random random, int length, int alphabet) {
+        final int[] tokens = new int[length];
+        for (int i = 0; i < length; i++) {
+            // log-uniform, so that few tokens are frequent and most are rare
+            tokens[i] = (int) Math.pow(alphabet, random.nextDouble()) - 1;
+        }
+        for (int i = length / 2; i < length; i++) {
+            if (random.nextInt(10) != 0) {
+                tokens[i] = tokens[i - length / 2];
+            }
+        }
+        final int[] ids = new int[alphabet];
+        int size = 0;
+        final int[] input = new int[length + SuffixArrays.MAX_EXTRA_TRAILING_SPACE];
+        for (int i = 0; i < length; i++) {
+            if (ids[tokens[i]] == 0) {
+                ids[tokens[i]] = ++size;
+            }
+            input[i] = ids[tokens[i]];
+        }
+        return input;
+    }
+
     private void assertLCP_Interval(int start, int length, int depth, int numberOfTimes, Block lcp_interval) {
         assertEquals(lcp_interval.toString(), start, lcp_interval.start);
         assertEquals(lcp_interval.toString(), length, lcp_interval.length);
@@ -66,12 +102,12 @@ public class TokenIndexTest extends AbstractTest {
         TokenIndex tokenIndex = new TokenIndex(new EqualityTokenComparator(), w);
         tokenIndex.prepare();
         // N.B. The witness markers get *not* sorted first, because the
-        // GenericArrayAdapter has already replaced them with Integers
+        // token index has already replaced all tokens with symbol ids
         // by the time we arrive here.
         //
         // Position:     0  1  2  3  4  5  6  7  8  9 10 11 12 13 14
         // Tokens:       a  b  c  d  e $1  a  e  c  d $2  a  d  b $3
-        // Adapter-Id:   0  1  2  3  4  5  0  4  2  3  6  0  3  1  7
+        // Symbol-Id:    0  1  2  3  4  5  0  4  2  3  6  0  3  1  7
         // SuffixArray:  0 11  6  1 13  2  8 12  3  9  7  4  5 10 14
         //               -------------------------------------------
         //               a  a  a  b  b  c  c  d  d  d  e  e $1 $2 $3
@@ -80,10 +116,87 @@ public class TokenIndexTest extends AbstractTest {
         //               ...
         // LCP:          -  1  1  0  1  0  2  0  1  1  0  1  0  0  0
         //
+        assertEquals("[0, 1, 2, 3, 4, 5, 0, 4, 2, 3, 6, 0, 3, 1, 7]", Arrays.toString(tokenIndex.token_ids));
         assertEquals("[0, 11, 6, 1, 13, 2, 8, 12, 3, 9, 7, 4, 5, 10, 14]", Arrays.toString(tokenIndex.suffix_array));
         assertEquals("[-1, 1, 1, 0, 1, 0, 2, 0, 1, 1, 0, 1, 0, 0, 0]", Arrays.toString(tokenIndex.LCP_array));
     }
 
+    @Test
+    public void suffixArrayBuilders() {
+        final Random random = new Random(42);
+        final String[] texts = new String[3];
+        for (int wc = 0; wc < texts.length; wc++) {
+            final StringBuilder text = new StringBuilder();
+            for (int tc = 0; tc < 2000; tc++) {
+                text.append("t").append(random.nextInt(300)).append(' ');
+            }
+            texts[wc] = text.toString();
+        }
+        final SimpleWitness[] w = createWitnesses(texts);
+        final TokenIndex expected = new TokenIndex(new EqualityTokenComparator(), w);
+        expected.prepare();
+        for (ISuffixArrayBuilder builder : new ISuffixArrayBuilder[] { new QSufSort(), new Skew() }) {
+            final TokenIndex tokenIndex = new TokenIndex(new EqualityTokenComparator(), builder, Arrays.asList(w));
+            tokenIndex.prepare();
+            assertEquals(Arrays.toString(expected.suffix_array), Arrays.toString(tokenIndex.suffix_array));
+            assertEquals(Arrays.toString(expected.LCP_array), Arrays.toString(tokenIndex.LCP_array));
+        }
+    }
+
+    /**
+     * Times the suffix array builders supporting token alphabets on symbols shaped like those of a token index: ids
+     * assigned in order of first occurrence, skewed towards frequent tokens, the second half of the input repeating the
+     * first with some variation like witnesses of the same text; logs the best of a few runs per builder. Enabled by
+     * {@link #BENCHMARK_PROPERTY}.
+     */
+    @Test
+    public void suffixArrayBuilderBenchmark() {
+        assumeBenchmark();
+        final Random random = new Random(42);
+        for (int[] size : new int[][] { { 100000, 2000 }, { 1000000, 50000 }, { 5000000, 200000 } }) {
+            final int[] input = tokenSymbols(random, size[0], size[1]);
+            final int[] expected = new SAIS().buildSuffixArray(input.clone(), 0, size[0]);
+            for (ISuffixArrayBuilder builder : new ISuffixArrayBuilder[] { new SAIS(), new QSufSort(), new Skew(), new ParallelPrefixDoubling() }) {
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < 3; run++) {
+                    final int[] copy = input.clone();
+                    final long start = System.nanoTime();
+                    final int[] suffixArray = builder.buildSuffixArray(copy, 0, size[0]);
+                    best = Math.min(best, (System.nanoTime() - start) / 1000000);
+                    assertEquals(Arrays.toString(expected), Arrays.toString(Arrays.copyOf(suffixArray, size[0])));
+                }
+                LOG.log(Level.INFO, "{0} on {1} tokens of an alphabet of {2}: {3} ms", new Object[] {
+                        builder.getClass().getSimpleName(), size[0], size[1], best
+                });
+            }
+        }
+    }
+
+    @Test
+    public void editDistanceSymbols() {
+        final Random random = new Random(42);
+        final String[] texts = new String[4];
+        for (int wc = 0; wc < texts.length; wc++) {
+            final StringBuilder text = new StringBuilder();
+            for (int tc = 0; tc < 500; tc++) {
+                text.append((char) ('a' + random.nextInt(4))).append((char) ('a' + random.nextInt(4))).append(' ');
+            }
+            texts[wc] = text.toString();
+        }
+        final SimpleWitness[] w = createWitnesses(texts);
+        final TokenIndex tokenIndex = new TokenIndex(new EditDistanceTokenComparator(1), w);
+        tokenIndex.prepare();
+        // tokens share a symbol if and only if their normalized forms are identical, so that blocks are exact repeats
+        final Map<String, Integer> symbols = new HashMap<>();
+        for (int tc = 0; tc < tokenIndex.token_array.length; tc++) {
+            if (tokenIndex.token_array[tc] instanceof SimpleToken) {
+                final int symbol = tokenIndex.token_ids[tc];
+                assertEquals(symbol, (int) symbols.computeIfAbsent(((SimpleToken) tokenIndex.token_array[tc]).getNormalized(), n -> symbol));
+            }
+        }
+        assertEquals(symbols.size(), new HashSet<>(symbols.values()).size());
+    }
+
     @Test
     public void testCaseDanielStoeklLCPIntervals() {
         // 1: a, b, c, d, e
@@ -109,7 +222,7 @@ public class TokenIndexTest extends AbstractTest {
         tokenIndex.prepare();
         // Position:     0   1   2   3   4   5   6
         // Tokens:       the a   the $1  the a   $2
-        // Adapter-Id:   0   1   0   2   0   1   3
+        // Symbol-Id:    0   1   0   2   0   1   3
         // SuffixArray:  0   4   2   1   5   3   6
         //               --------------------------
         //               0   0   0   1   1   2   3
@@ -129,6 +242,46 @@ public class TokenIndexTest extends AbstractTest {
         assertEquals(3, blocks.size());
     }
 
+    @Test
+    public void filteredIntervals() {
+        final SimpleWitness[] w = createWitnesses("a b c d e", "a e c d", "a d b");
+        TokenIndex tokenIndex = new TokenIndex(new EqualityTokenComparator(), w);
+        tokenIndex.prepare();
+
+        final List<String> all = new ArrayList<>();
+        tokenIndex.visitIntervals((start, end, length) -> all.add(start + "-" + end + ":" + length));
+        assertEquals("[0-2:1, 3-4:1, 5-6:2, 7-9:1, 10-11:1]", all.toString());
+
+        final List<String> long_intervals = new ArrayList<>();
+        tokenIndex.visitIntervals(2, 1, Integer.MAX_VALUE, 1, (start, end, length) -> long_intervals.add(start + "-" + end + ":" + length));
+        assertEquals("[5-6:2]", long_intervals.toString());
+
+        final List<String> rare_intervals = new ArrayList<>();
+        tokenIndex.visitIntervals(1, 1, 2, 1, (start, end, length) -> rare_intervals.add(start + "-" + end + ":" + length));
+        assertEquals("[3-4:1, 5-6:2, 10-11:1]", rare_intervals.toString());
+
+        final List<String> deep_intervals = new ArrayList<>();
+        tokenIndex.visitIntervals(1, 1, Integer.MAX_VALUE, 3, (start, end, length) -> deep_intervals.add(start + "-" + end + ":" + length));
+        assertEquals("[0-2:1, 7-9:1]", deep_intervals.toString());
+    }
+
+    @Test
+    public void occurrencesInWitnessAndGraph() {
+        final SimpleWitness[] w = createWitnesses("the a the", "the a");
+        TokenIndex tokenIndex = new TokenIndex(new EqualityTokenComparator(), w);
+        tokenIndex.prepare();
+
+        final List<String> pairs = new ArrayList<>();
+        tokenIndex.visitOccurrences(w[1], (start, end, length, witnessToken, graphToken) -> pairs.add(witnessToken + "=" + graphToken + ":" + length));
+        assertEquals("[4=0:2, 4=0:1, 4=2:1, 5=1:1]", pairs.toString());
+
+        final List<String> instances = new ArrayList<>();
+        for (Block.Instance instance : tokenIndex.getBlockInstancesForWitness(w[1])) {
+            instances.add(instance.start_token + ":" + instance.length() + "/" + instance.block.getDepth());
+        }
+        assertEquals("[4:2/2, 4:1/2, 5:1/2]", instances.toString());
+    }
+
     @Test
     public void testCustomTokensAndComparator() {
         Witness w1 = new MySpecialWitness();
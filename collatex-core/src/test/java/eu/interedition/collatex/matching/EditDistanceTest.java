@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.interedition.collatex.matching;
+
+import eu.interedition.collatex.AbstractTest;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class EditDistanceTest extends AbstractTest {
+
+    @Test
+    public void distances() {
+        assertEquals(0, EditDistance.compute("", ""));
+        assertEquals(3, EditDistance.compute("", "cat"));
+        assertEquals(3, EditDistance.compute("kitten", "sitting"));
+        assertEquals(1, EditDistance.compute("near", "nar"));
+        assertEquals(2, EditDistance.compute("ab", "ba"));
+    }
+
+    @Test
+    public void boundedDistances() {
+        assertEquals(3, EditDistance.compute("kitten", "sitting", 3));
+        assertEquals(3, EditDistance.compute("kitten", "sitting", 2));
+        assertEquals(2, EditDistance.compute("kitten", "sitting", 1));
+        assertEquals(1, EditDistance.compute("a", "abc", 0));
+        assertEquals(0, EditDistance.compute("same", "same", 0));
+    }
+
+    @Test
+    public void boundedMatchesFullMatrix() {
+        final Random random = new Random(42);
+        for (int run = 0; run < 20000; run++) {
+            final String a = randomString(random, random.nextInt(12));
+            final String b = randomString(random, random.nextInt(12));
+            final int distance = fullMatrix(a, b);
+            assertEquals(a + "/" + b, distance, EditDistance.compute(a, b));
+            for (int max = 0; max <= 12; max++) {
+                assertEquals(a + "/" + b + "/" + max, Math.min(distance, max + 1), EditDistance.compute(a, b, max));
+            }
+        }
+    }
+
+    @Test
+    public void longStrings() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append((char) ('a' + (i * 7) % 26));
+        }
+        final String a = text.toString();
+        final String b = text.deleteCharAt(500).insert(10, 'z').toString();
+        assertEquals(2, EditDistance.compute(a, b, 2));
+        assertEquals(2, EditDistance.compute(a, b, 1));
+    }
+
+    private static String randomString(Random random, int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(chars);
+    }
+
+    private static int fullMatrix(String a, String b) {
+        final int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                final int cost = (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -22,15 +22,20 @@ package eu.interedition.collatex.matching;
 import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.simple.SimpleToken;
 import eu.interedition.collatex.simple.SimpleWitness;
 import org.junit.Test;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.logging.Level;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class MatchesTest extends AbstractTest {
 
@@ -70,6 +75,47 @@ public class MatchesTest extends AbstractTest {
         assertEquals(7, matches.allMatches.values().stream().mapToLong(List::size).sum());
     }
 
+    @Test
+    public void hashJoinEqualsPairwiseComparison() {
+        final Random random = new Random(42);
+        final SimpleWitness[] w = createWitnesses(randomText(random, 500), randomText(random, 500));
+        final VariantGraph graph = collate(w[0]);
+        final Matches joined = Matches.between(graph.vertices(), w[1].getTokens(), new EqualityTokenComparator());
+        // a comparator which is not keyed is compared pairwise
+        final Comparator<Token> equality = new EqualityTokenComparator();
+        final Matches pairwise = Matches.between(graph.vertices(), w[1].getTokens(), (a, b) -> equality.compare(a, b));
+        assertEquals(pairwise.allMatches, joined.allMatches);
+        assertEquals(pairwise.unmatchedInWitness, joined.unmatchedInWitness);
+        assertEquals(pairwise.uniqueInWitness, joined.uniqueInWitness);
+        assertEquals(pairwise.ambiguousInWitness, joined.ambiguousInWitness);
+    }
+
+    @Test
+    public void subclassOverridingCompareIsComparedPairwise() {
+        final SimpleWitness[] w = createWitnesses("the white cat", "a black dog");
+        final VariantGraph graph = collate(w[0]);
+        // equal if of the same length, which the inherited key of the normalized form does not agree with
+        final EqualityTokenComparator sameLength = new EqualityTokenComparator() {
+            @Override
+            public int compare(Token base, Token witness) {
+                return Integer.compare(((SimpleToken) base).getNormalized().length(), ((SimpleToken) witness).getNormalized().length());
+            }
+        };
+        assertNull(KeyedTokenComparator.keyOf(sameLength));
+        assertNotNull(KeyedTokenComparator.keyOf(new EqualityTokenComparator() {
+        }));
+
+        final Matches matches = Matches.between(graph.vertices(), w[1].getTokens(), sameLength);
+        assertMatches(matches, 1, 1, 1); // "a" is unmatched, "black" matches "white", "dog" matches "the" and "cat"
+    }
+
+    private static String randomText(Random random, int length) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26))).append((char) ('a' + random.nextInt(8))).append(' ');
+        }
+        return text.toString();
+    }
 
     private void assertMatches(final Matches matches, int expected_unmatched, int expected_unique, int expected_ambiguous) {
         Set<Token> unmatched = matches.unmatchedInWitness;
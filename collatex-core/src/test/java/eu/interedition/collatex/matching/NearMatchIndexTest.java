@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.interedition.collatex.matching;
+
+import eu.interedition.collatex.AbstractTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NearMatchIndexTest extends AbstractTest {
+
+    @Test
+    public void nearStrings() {
+        final NearMatchIndex index = new NearMatchIndex(1);
+        assertEquals(0, index.add("near"));
+        assertEquals(1, index.add("nar"));
+        assertEquals(2, index.add("matching"));
+        assertEquals(0, index.add("near"));
+
+        assertArrayEquals(new int[] { 0, 1 }, index.near("near"));
+        assertArrayEquals(new int[] { 0 }, index.near("bear"));
+        assertArrayEquals(new int[] { 2 }, index.near("matchin"));
+        assertArrayEquals(new int[0], index.near("yeah"));
+    }
+
+    @Test
+    public void nearStringsMatchEditDistance() {
+        final Random random = new Random(42);
+        for (int maxDistance = 0; maxDistance <= NearMatchIndex.MAX_DISTANCE; maxDistance++) {
+            final NearMatchIndex index = new NearMatchIndex(maxDistance);
+            final String[] strings = IntStream.range(0, 500).mapToObj(i -> randomString(random)).toArray(String[]::new);
+            Arrays.stream(strings).forEach(index::add);
+
+            for (int run = 0; run < 500; run++) {
+                final String query = randomString(random);
+                final int distance = maxDistance;
+                final int[] expected = IntStream.range(0, index.size())
+                        .filter(id -> EditDistance.compute(query, index.get(id)) <= distance)
+                        .toArray();
+                assertArrayEquals(query, expected, index.near(query));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedDistance() {
+        new NearMatchIndex(NearMatchIndex.MAX_DISTANCE + 1);
+    }
+
+    private static String randomString(Random random) {
+        final char[] chars = new char[random.nextInt(7)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+}
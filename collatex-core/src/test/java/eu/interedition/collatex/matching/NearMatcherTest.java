@@ -22,13 +22,20 @@ package eu.interedition.collatex.matching;
 import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.simple.SimpleToken;
 import eu.interedition.collatex.simple.SimpleWitness;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class NearMatcherTest extends AbstractTest {
 
@@ -42,4 +49,88 @@ public class NearMatcherTest extends AbstractTest {
         assertEquals(w[0].getTokens().get(0), matches.get(w[1].getTokens().get(0)).get(0).tokens().stream().findFirst().get());
         assertEquals(w[0].getTokens().get(1), matches.get(w[1].getTokens().get(1)).get(0).tokens().stream().findFirst().get());
     }
+
+    @Test
+    public void indexedMatchesEqualPairwiseComparison() {
+        final Random random = new Random(42);
+        final SimpleWitness[] w = createWitnesses(randomText(random, 300), randomText(random, 300));
+        final VariantGraph graph = collate(w[0]);
+        for (int threshold = 1; threshold <= NearMatchIndex.MAX_DISTANCE; threshold++) {
+            final EditDistanceTokenComparator indexed = new EditDistanceTokenComparator(threshold);
+            // a subclass is not recognized by the index and compared pairwise
+            final EditDistanceTokenComparator pairwise = new EditDistanceTokenComparator(threshold) {
+            };
+            final Matches indexedMatches = Matches.between(graph.vertices(), w[1].getTokens(), indexed);
+            final Matches pairwiseMatches = Matches.between(graph.vertices(), w[1].getTokens(), pairwise);
+            assertEquals(pairwiseMatches.allMatches, indexedMatches.allMatches);
+            assertEquals(pairwiseMatches.uniqueInWitness, indexedMatches.uniqueInWitness);
+            assertEquals(pairwiseMatches.ambiguousInWitness, indexedMatches.ambiguousInWitness);
+        }
+    }
+
+    @Test
+    public void nearSymbols() {
+        final SimpleWitness[] w = createWitnesses("near nar matching yeah near");
+        final TokenSymbols symbols = new TokenSymbols(new EditDistanceTokenComparator());
+        final List<Token> tokens = w[0].getTokens();
+        final int near = symbols.id(tokens.get(0));
+        final int nar = symbols.id(tokens.get(1));
+        assertNotEquals(near, nar);
+        assertEquals(near, symbols.id(tokens.get(4)));
+        assertNotEquals(near, symbols.id(tokens.get(2)));
+        assertNotEquals(symbols.id(tokens.get(2)), symbols.id(tokens.get(3)));
+        symbols.id(tokens.get(3));
+
+        assertEquals(Collections.singletonList(nar), near(symbols, tokens.get(0)));
+        assertEquals(Collections.singletonList(near), near(symbols, tokens.get(1)));
+        assertEquals(Collections.emptyList(), near(symbols, tokens.get(2)));
+    }
+
+    @Test
+    public void identicalFormsShareSymbols() {
+        final Random random = new Random(42);
+        final SimpleWitness[] w = createWitnesses(randomText(random, 2000));
+        for (int threshold = 1; threshold <= NearMatchIndex.MAX_DISTANCE + 1; threshold++) {
+            final TokenSymbols symbols = new TokenSymbols(new EditDistanceTokenComparator(threshold));
+            final Map<String, Integer> ids = new HashMap<>();
+            for (Token token : w[0].getTokens()) {
+                final int id = symbols.id(token);
+                assertEquals(id, (int) ids.computeIfAbsent(((SimpleToken) token).getNormalized(), form -> id));
+            }
+            assertEquals(ids.size(), symbols.size());
+
+            // forms beyond the distance supported by the index are compared one by one
+            final Comparator<Token> comparator = new EditDistanceTokenComparator(threshold);
+            for (Token token : w[0].getTokens().subList(0, 20)) {
+                final List<Integer> expected = new ArrayList<>();
+                for (Token other : w[0].getTokens()) {
+                    final int id = symbols.id(other);
+                    if (id != symbols.id(token) && comparator.compare(token, other) == 0 && !expected.contains(id)) {
+                        expected.add(id);
+                    }
+                }
+                Collections.sort(expected);
+                assertEquals(expected, near(symbols, token));
+            }
+        }
+    }
+
+    private static List<Integer> near(TokenSymbols symbols, Token token) {
+        final List<Integer> near = new ArrayList<>();
+        symbols.near(token, near::add);
+        Collections.sort(near);
+        return near;
+    }
+
+    private static String randomText(Random random, int length) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            final char[] word = new char[1 + random.nextInt(4)];
+            for (int c = 0; c < word.length; c++) {
+                word[c] = (char) ('a' + random.nextInt(3));
+            }
+            text.append(word).append(' ');
+        }
+        return text.toString();
+    }
 }
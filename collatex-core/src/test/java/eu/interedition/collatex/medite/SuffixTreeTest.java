@@ -25,7 +25,12 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
@@ -42,4 +47,25 @@ public class SuffixTreeTest extends AbstractTest {
                 .collect(Collectors.joining(", ")));
     }
 
+    @Test
+    public void keyedSuffixTree() {
+        final Random random = new Random(42);
+        final String[] source = IntStream.range(0, 400)
+                .mapToObj(i -> Character.toString((char) ((random.nextBoolean() ? 'a' : 'A') + random.nextInt(20))))
+                .toArray(String[]::new);
+        final Comparator<String> comparator = Comparator.comparing(String::toLowerCase);
+
+        final SuffixTree<String> compared = SuffixTree.build(comparator, source);
+        final SuffixTree<String> keyed = SuffixTree.build(comparator, String::toLowerCase, source);
+        assertEquals(compared.toString(), keyed.toString());
+
+        for (int start = 0; start < source.length; start += 7) {
+            final List<String> query = Arrays.asList(source).subList(start, Math.min(source.length, start + 12));
+            assertEquals(matches(compared, query), matches(keyed, query));
+        }
+    }
+
+    private static String matches(SuffixTree<String> suffixTree, List<String> query) {
+        return StreamUtil.stream(suffixTree.match(query)).map(Object::toString).collect(Collectors.joining(", "));
+    }
 }
@@ -21,9 +21,16 @@ package eu.interedition.collatex.needlemanwunsch;
 
 import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.CollationAlgorithmFactory;
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleWitness;
 import org.junit.Test;
 
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  */
@@ -34,4 +41,29 @@ public class NeedlemanWunschTest extends AbstractTest {
         setCollationAlgorithm(CollationAlgorithmFactory.needlemanWunsch(new EqualityTokenComparator()));
         LOG.fine(toString(table(collate("a b a b a", "a b a"))));
     }
+
+    @Test
+    public void symbolsPerCollation() {
+        final SimpleWitness[] w = createWitnesses("a b c d", "a b x d", "a y c d", "a b c d");
+        final int[] keys = new int[1];
+        final EqualityTokenComparator counting = new EqualityTokenComparator() {
+            @Override
+            public Object key(Token token) {
+                keys[0]++;
+                return super.key(token);
+            }
+        };
+
+        final VariantGraph graph = new VariantGraph();
+        new NeedlemanWunschAlgorithm(counting).collate(graph, Arrays.asList(w));
+        // every token is looked up once, when its witness is collated; the tokens of the graph are not looked up again
+        assertEquals(16, keys[0]);
+
+        final VariantGraph witnessByWitness = new VariantGraph();
+        final NeedlemanWunschAlgorithm algorithm = new NeedlemanWunschAlgorithm(new EqualityTokenComparator());
+        for (SimpleWitness witness : w) {
+            algorithm.collate(witnessByWitness, witness);
+        }
+        assertEquals(toString(table(witnessByWitness)), toString(table(graph)));
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.simple;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static eu.interedition.collatex.simple.SimplePatternTokenizer.PUNCT;
+import static org.junit.Assert.assertEquals;
+
+public class SimplePatternTokenizerTest {
+
+    private static final Function<String, Stream<String>> WHITESPACE_PATTERN = SimplePatternTokenizer.tokenizer(Pattern.compile("\\s*?\\S+\\s*"));
+
+    private static final Function<String, Stream<String>> WS_AND_PUNCT_PATTERN = SimplePatternTokenizer.tokenizer(Pattern.compile("[\\s" + PUNCT + "]*?[^\\s" + PUNCT + "]+[\\s" + PUNCT + "]*"));
+
+    private static final Function<String, Stream<String>> WS_OR_PUNCT_PATTERN = SimplePatternTokenizer.tokenizer(Pattern.compile("[" + PUNCT + "]+[\\s]*|[^" + PUNCT + "\\s]+[\\s]*"));
+
+    @Test
+    public void tokenize() {
+        assertEquals("[Hello, , , world, ! ]", tokens(SimplePatternTokenizer.BY_WS_OR_PUNCT, "  Hello, world! "));
+        assertEquals("[  Hello, , world! ]", tokens(SimplePatternTokenizer.BY_WS_AND_PUNCT, "  Hello, world! "));
+        assertEquals("[  Hello, , world! ]", tokens(SimplePatternTokenizer.BY_WHITESPACE, "  Hello, world! "));
+        assertEquals("[]", tokens(SimplePatternTokenizer.BY_WS_AND_PUNCT, " ,. "));
+    }
+
+    @Test
+    public void scannersMatchPatterns() {
+        final char[] alphabet = " \t\n\u000B\f\r .?!,;:-'aBé1".toCharArray();
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int c = random.nextInt(24); c > 0; c--) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            final String input = text.toString();
+            assertEquals(input, tokens(WHITESPACE_PATTERN, input), tokens(SimplePatternTokenizer.BY_WHITESPACE, input));
+            assertEquals(input, tokens(WS_AND_PUNCT_PATTERN, input), tokens(SimplePatternTokenizer.BY_WS_AND_PUNCT, input));
+            assertEquals(input, tokens(WS_OR_PUNCT_PATTERN, input), tokens(SimplePatternTokenizer.BY_WS_OR_PUNCT, input));
+        }
+    }
+
+    @Test
+    public void slices() {
+        final List<CharSequence> slices = SimplePatternTokenizer.slices("the black cat", SimplePatternTokenizer.WS_OR_PUNCT).collect(Collectors.toList());
+        assertEquals(3, slices.size());
+        assertEquals("black ", slices.get(1).toString());
+        assertEquals("ack", slices.get(1).subSequence(2, 5).toString());
+    }
+
+    private static String tokens(Function<String, Stream<String>> tokenizer, String input) {
+        return tokenizer.apply(input).collect(Collectors.toList()).toString();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.interedition.collatex.simple;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleTokenNormalizersTest {
+
+    private static final Logger LOG = Logger.getLogger(SimpleTokenNormalizersTest.class.getName());
+
+    private static final Function<String, String> PATTERN_NORMALIZER = input -> {
+        final String normalized = SimpleWitness.PUNCT.matcher(input.trim().toLowerCase()).replaceAll("");
+        return (normalized.length() == 0 ? input : normalized);
+    };
+
+    @Test
+    public void whitespaceOrPunctuation() {
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            final int type = Character.getType(c);
+            final boolean expected = Character.isWhitespace(c)
+                || type == Character.START_PUNCTUATION
+                || type == Character.END_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION;
+            assertEquals(Integer.toHexString(c), expected, SimpleTokenNormalizers.isWhitespaceOrPunctuation(c));
+        }
+    }
+
+    @Test
+    public void tokenNormalizerMatchesPattern() {
+        final char[] alphabet = " \t\n.?!,;:-'\"()[]{}~`_aBé1¿’".toCharArray();
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int c = random.nextInt(12); c > 0; c--) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            final String input = text.toString();
+            assertEquals(input, PATTERN_NORMALIZER.apply(input), SimpleWitness.TOKEN_NORMALIZER.apply(input));
+        }
+    }
+
+    @Test
+    public void memoizing() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Function<String, String> normalizer = SimpleTokenNormalizers.memoizing(input -> {
+            calls.incrementAndGet();
+            return SimpleTokenNormalizers.LC_TRIM_WS_PUNCT.apply(input);
+        }, 2);
+
+        final String normalized = normalizer.apply("Cat, ");
+        assertEquals("cat", normalized);
+        assertSame(normalized, normalizer.apply("Cat, "));
+        assertEquals(1, calls.get());
+
+        normalizer.apply("dog ");
+        normalizer.apply("Bird ");
+        normalizer.apply("Bird ");
+        assertEquals(4, calls.get());
+        normalizer.apply("dog ");
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void normalizationTime() {
+        final String[] tokens = SimplePatternTokenizer.BY_WS_OR_PUNCT
+            .apply(String.join(" ", Collections.nCopies(5000, "The great and inherited development of the udders in cows and goats, in countries where they are habitually milked!")))
+            .toArray(String[]::new);
+        final Function<String, String> memoized = SimpleTokenNormalizers.memoizing(SimpleWitness.TOKEN_NORMALIZER);
+        for (String token : tokens) {
+            assertEquals(PATTERN_NORMALIZER.apply(token), memoized.apply(token));
+        }
+
+        normalizationTime(tokens, PATTERN_NORMALIZER);
+        normalizationTime(tokens, SimpleWitness.TOKEN_NORMALIZER);
+        final long patternTime = normalizationTime(tokens, PATTERN_NORMALIZER);
+        final long plainTime = normalizationTime(tokens, SimpleWitness.TOKEN_NORMALIZER);
+        final long memoizedTime = normalizationTime(tokens, memoized);
+        LOG.log(Level.INFO, "Normalized {0} tokens in {1} ms by pattern; {2} ms by ASCII fast path; memoized: {3} ms", new Object[]{
+            tokens.length, patternTime, plainTime, memoizedTime
+        });
+    }
+
+    private static long normalizationTime(String[] tokens, Function<String, String> normalizer) {
+        final long start = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < 10; i++) {
+            for (String token : tokens) {
+                length += normalizer.apply(token).length();
+            }
+        }
+        assertTrue(length > 0);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
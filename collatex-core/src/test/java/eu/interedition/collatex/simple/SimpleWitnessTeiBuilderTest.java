@@ -19,15 +19,70 @@
 
 package eu.interedition.collatex.simple;
 
+import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.Token;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
-public class SimpleWitnessTeiBuilderTest {
+import static org.junit.Assert.assertEquals;
+
+public class SimpleWitnessTeiBuilderTest extends AbstractTest {
+
+    private static final String TEI = "<TEI xmlns='http://www.tei-c.org/ns/1.0'><text><body>" +
+        "<p><w>The</w> <w>bl<choice><abbr>a</abbr></choice>ck</w> <seg>\n  cat\n  <w>sat</w>\n</seg> ignored</p>" +
+        "<p><w>on</w> <w>the</w> <w>mat</w></p>" +
+        "<p><w>again</w></p>" +
+        "</body></text></TEI>";
+
+    @Test
+    public void tokens() throws XMLStreamException {
+        final SimpleWitness witness = new SimpleWitnessTeiBuilder("A", Integer.MAX_VALUE).read(stream(TEI));
+        assertEquals("A", witness.getSigil());
+        assertEquals("[The, black, catsat, on, the, mat, again]", contents(witness));
+    }
+
+    @Test
+    public void paragraphLimit() throws XMLStreamException {
+        assertEquals("[The, black, catsat, on, the, mat]", contents(new SimpleWitnessTeiBuilder("A", 2).read(stream(TEI))));
+        assertEquals("[]", contents(new SimpleWitnessTeiBuilder("A", 0).read(stream(TEI))));
+    }
+
+    @Test
+    public void largeDocument() throws XMLStreamException {
+        final StringBuilder tei = new StringBuilder("<TEI xmlns='http://www.tei-c.org/ns/1.0'><text><body>");
+        for (int pc = 0; pc < 20000; pc++) {
+            tei.append("<p>");
+            for (int wc = 0; wc < 10; wc++) {
+                tei.append("<w n='").append(wc).append("'>Word").append(pc % 100).append("</w>\n");
+            }
+            tei.append("<seg type='s'>\n  some <hi>words</hi>\n</seg></p>\n");
+        }
+        final byte[] document = tei.append("</body></text></TEI>").toString().getBytes(StandardCharsets.UTF_8);
+
+        new SimpleWitnessTeiBuilder().read(new ByteArrayInputStream(document));
+        final long start = System.nanoTime();
+        final SimpleWitness witness = new SimpleWitnessTeiBuilder().read(new ByteArrayInputStream(document));
+        LOG.log(Level.INFO, "Read {0} tokens from {1} bytes of TEI in {2} ms", new Object[]{
+            witness.getTokens().size(), document.length, (System.nanoTime() - start) / 1000000
+        });
+        assertEquals(220000, witness.getTokens().size());
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String contents(SimpleWitness witness) {
+        return witness.getTokens().stream().map(t -> ((SimpleToken) t).getContent()).collect(Collectors.toList()).toString();
+    }
 
     @Ignore
     @Test
@@ -20,9 +20,21 @@
 package eu.interedition.collatex.simple;
 
 import eu.interedition.collatex.AbstractTest;
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.VariantGraph;
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class SimpleWitnessTest extends AbstractTest {
 
@@ -35,6 +47,144 @@ public class SimpleWitnessTest extends AbstractTest {
         assertNormalized("&", "&");
     }
 
+    @Test
+    public void tokenPositions() {
+        final SimpleWitness[] w = createWitnesses("a b c", "a b c");
+        final SimpleToken c = (SimpleToken) w[0].getTokens().get(2);
+        assertEquals(2, c.getPosition());
+        assertEquals("A:2:'c'", c.toString());
+        assertTrue(w[0].compare((SimpleToken) w[0].getTokens().get(1), c) < 0);
+
+        w[0].getTokens().remove(0);
+        assertEquals(1, c.getPosition());
+        assertEquals(-1, w[0].indexOf((SimpleToken) w[1].getTokens().get(0)));
+    }
+
+    @Test
+    public void compactWitness() {
+        final SimpleWitness simple = new SimpleWitness("A", "The black Cat, and the DOG.");
+        final CompactWitness compact = new CompactWitness("A", "The black Cat, and the DOG.");
+        assertEquals(simple.getTokens().size(), compact.getTokens().size());
+        for (int tc = 0; tc < simple.getTokens().size(); tc++) {
+            final SimpleToken expected = (SimpleToken) simple.getTokens().get(tc);
+            final SimpleToken actual = (SimpleToken) compact.getTokens().get(tc);
+            assertEquals(expected.getContent(), actual.getContent());
+            assertEquals(expected.getNormalized(), actual.getNormalized());
+            assertEquals(tc, actual.getPosition());
+            assertSame(actual, compact.getTokens().get(tc));
+        }
+        // "The" and "the" share their normalized form
+        assertSame(((SimpleToken) compact.getTokens().get(0)).getNormalized(), ((SimpleToken) compact.getTokens().get(5)).getNormalized());
+        assertTrue(compact.compare((SimpleToken) compact.getTokens().get(0), (SimpleToken) compact.getTokens().get(1)) < 0);
+
+        final CompactWitness copy = new CompactWitness("B");
+        copy.setTokens(simple.getTokens());
+        assertEquals(SimpleToken.toString(simple.getTokens()), SimpleToken.toString(copy.getTokens()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compactWitnessRejectsTokenSubclasses() {
+        final SimpleWitness simple = new SimpleWitness("A");
+        // a subclass carrying more than content and normalized form, which a compact witness would lose
+        simple.setTokens(Collections.<Token>singletonList(new SimpleToken(simple, "a", "a") {
+        }));
+        new CompactWitness("B").setTokens(simple.getTokens());
+    }
+
+    /**
+     * Compares the heap retained by graphs collated from simple and compact witnesses, with the tokens held by their
+     * vertices.
+     */
+    @Test
+    public void compactWitnessHeap() {
+        final int length = 1000;
+        final String[] contents = randomTexts(new Random(42), 4, length);
+        final long simple = heapPerInstance(() -> collate(Arrays.stream(contents).map(c -> new SimpleWitness("W", c)).toArray(SimpleWitness[]::new)));
+        final long compact = heapPerInstance(() -> collate(Arrays.stream(contents).map(c -> new CompactWitness("W", c)).toArray(SimpleWitness[]::new)));
+        LOG.log(Level.INFO, "Heap retained by a graph of {0} witnesses with {1} tokens each; simple witnesses: {2} bytes; compact: {3} bytes", new Object[]{
+                contents.length, length, simple, compact
+        });
+        assertTrue(compact < simple * 0.9);
+    }
+
+    private static String[] randomTexts(Random random, int witnesses, int length) {
+        final String[] vocabulary = new String[length / 4];
+        for (int wc = 0; wc < vocabulary.length; wc++) {
+            final StringBuilder word = new StringBuilder();
+            for (int cc = 3 + random.nextInt(6); cc > 0; cc--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[wc] = (random.nextBoolean() ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word.toString());
+        }
+        final String[] base = new String[length];
+        for (int tc = 0; tc < length; tc++) {
+            base[tc] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+        // witnesses of the same text, with every tenth word replaced
+        final String[] texts = new String[witnesses];
+        for (int wc = 0; wc < witnesses; wc++) {
+            final String[] words = base.clone();
+            for (int tc = 0; tc < length; tc++) {
+                if (random.nextInt(10) == 0) {
+                    words[tc] = vocabulary[random.nextInt(vocabulary.length)];
+                }
+            }
+            texts[wc] = String.join(" ", words);
+        }
+        return texts;
+    }
+
+    /**
+     * Serializes a graph consisting of a single large joined vertex; ordering its tokens must look up their positions
+     * instead of searching for them in the witness, which would compare tokens to each other for every comparison.
+     */
+    @Test
+    public void largeJoinedVertex() {
+        final int length = 40000;
+        final SimpleWitness[] witnesses = {new SimpleWitness("A"), new SimpleWitness("B")};
+        for (SimpleWitness witness : witnesses) {
+            witness.setTokens(IntStream.range(0, length)
+                    .mapToObj(tc -> new CountingToken(witness, Integer.toString(tc)))
+                    .collect(Collectors.toList()));
+        }
+
+        final VariantGraph graph = new VariantGraph();
+        final VariantGraph.Vertex[] path = witnesses[0].getTokens().stream().map(graph::add).toArray(VariantGraph.Vertex[]::new);
+        for (int tc = 0; tc < length; tc++) {
+            path[tc].add(Collections.<Token>singleton(witnesses[1].getTokens().get(tc)));
+        }
+        graph.append(witnesses[0], path);
+        graph.append(witnesses[1], path);
+        VariantGraph.JOIN.apply(graph);
+
+        CountingToken.equalityChecks = 0;
+        final long start = System.nanoTime();
+        new SimpleVariantGraphSerializer(graph).toDot(new StringWriter());
+        LOG.log(Level.INFO, "Serializing a joined vertex of {0} tokens: {1} ms; {2} token equality checks", new Object[]{
+                length, (System.nanoTime() - start) / 1000000, CountingToken.equalityChecks
+        });
+        assertTrue(CountingToken.equalityChecks < length);
+    }
+
+    private static class CountingToken extends SimpleToken {
+        private static long equalityChecks;
+
+        private CountingToken(SimpleWitness witness, String content) {
+            super(witness, content, content);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            equalityChecks++;
+            return super.equals(obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+
     private static void assertNormalized(String content, String expected) {
         assertEquals(expected, SimpleWitness.TOKEN_NORMALIZER.apply(content));
     }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.suffixarray;
+
+import eu.interedition.collatex.AbstractTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class DensePositiveDecoratorTest extends AbstractTest {
+
+    @Test
+    public void sparseSymbols() {
+        final int[] sparse = { 7000000, -3, 7000000, Integer.MAX_VALUE, -3, 7000000, Integer.MIN_VALUE, 0 };
+        final int[] dense = { 3, 1, 3, 4, 1, 3, 0, 2 };
+
+        final int[] input = Arrays.copyOf(sparse, sparse.length);
+        final SuffixData expected = SuffixArrays.createWithLCP(Arrays.copyOf(dense, dense.length), 0, dense.length);
+        final SuffixData actual = SuffixArrays.createWithLCP(input, 0, input.length);
+        assertArrayEquals(expected.getSuffixArray(), actual.getSuffixArray());
+        assertArrayEquals(expected.getLCP(), actual.getLCP());
+        assertArrayEquals(sparse, input);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.suffixarray;
+
+import eu.interedition.collatex.AbstractTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ParallelPrefixDoublingTest extends AbstractTest {
+
+    @Test
+    public void sameAsSAIS() {
+        final Random random = new Random(42);
+        for (int length : new int[] { 1, 2, 3, 17, 1000, 50000 }) {
+            for (int alphabet : new int[] { 1, 2, 300, 100000 }) {
+                assertSameAsSAIS(randomSymbols(random, length, alphabet), 0, length, new ParallelPrefixDoubling());
+            }
+        }
+    }
+
+    @Test
+    public void subsequence() {
+        final int[] input = randomSymbols(new Random(42), 20000, 50);
+        final int[] subsequence = Arrays.copyOfRange(input, 100, 15100);
+        final ParallelPrefixDoubling builder = new ParallelPrefixDoubling();
+        assertArrayEquals(new SAIS().buildSuffixArray(subsequence, 0, subsequence.length), builder.buildSuffixArray(input, 100, 15000));
+        assertArrayEquals(
+                SuffixArrays.computeLCP(subsequence, 0, subsequence.length, builder.buildSuffixArray(subsequence, 0, subsequence.length)),
+                builder.computeLCP(input, 100, 15000, builder.buildSuffixArray(input, 100, 15000))
+        );
+    }
+
+    @Test
+    public void threadPools() {
+        final int length = 1 << 16;
+        final int[] input = witnessLikeSymbols(length);
+        final SuffixData expected = SuffixArrays.createWithLCP(input, 0, length, new SAIS());
+
+        // a smoke test of the parallel paths on both ends; see threadCounts() for a benchmark
+        for (int threads : new int[] { 1, Math.max(2, Runtime.getRuntime().availableProcessors()) }) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                final SuffixData actual = SuffixArrays.createWithLCP(input, 0, length, new ParallelPrefixDoubling(pool));
+                assertArrayEquals(Arrays.copyOf(expected.getSuffixArray(), length), actual.getSuffixArray());
+                assertArrayEquals(expected.getLCP(), actual.getLCP());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Times the builder on a few million symbols for every power of two up to the number of processors, logging the
+     * best of a few runs per thread count next to the time of SA-IS; enabled by {@link #BENCHMARK_PROPERTY}.
+     */
+    @Test
+    public void threadCounts() {
+        assumeBenchmark();
+        final int length = 1 << 22;
+        final int[] input = witnessLikeSymbols(length);
+
+        final SuffixData expected = SuffixArrays.createWithLCP(input, 0, length, new SAIS());
+        LOG.log(Level.INFO, "SA-IS and sequential LCP of {0} symbols: {1} ms", new Object[] {
+                length, bestOf(() -> SuffixArrays.createWithLCP(input, 0, length, new SAIS()))
+        });
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads = (threads < processors ? Math.min(threads * 2, processors) : threads + 1)) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                final ParallelPrefixDoubling builder = new ParallelPrefixDoubling(pool);
+                final SuffixData actual = SuffixArrays.createWithLCP(input, 0, length, builder);
+                assertArrayEquals(Arrays.copyOf(expected.getSuffixArray(), length), actual.getSuffixArray());
+                assertArrayEquals(expected.getLCP(), actual.getLCP());
+                LOG.log(Level.INFO, "Prefix doubling and parallel LCP of {0} symbols with {1} thread(s): {2} ms", new Object[] {
+                        length, threads, bestOf(() -> SuffixArrays.createWithLCP(input, 0, length, builder))
+                });
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void mergesLargeGroups() {
+        // one symbol, so that all suffixes are sorted as one group in every round, merging ranges of unequal sizes
+        final int length = ParallelPrefixDoubling.SEQUENTIAL_THRESHOLD * 5 + 3;
+        final int[] input = new int[length];
+        Arrays.fill(input, 1);
+        input[length / 3] = 0;
+        assertSameAsSAIS(input, 0, length, new ParallelPrefixDoubling());
+    }
+
+    private static void assertSameAsSAIS(int[] input, int start, int length, ParallelPrefixDoubling builder) {
+        final int[] expected = new SAIS().buildSuffixArray(input, start, length);
+        final int[] actual = builder.buildSuffixArray(input, start, length);
+        assertArrayEquals(expected, actual);
+        assertArrayEquals(SuffixArrays.computeLCP(input, start, length, expected), builder.computeLCP(input, start, length, actual));
+    }
+
+    /**
+     * @return random symbols of a large alphabet, the second half repeating the first with some variation, like
+     *         witnesses of the same text
+     */
+    private static int[] witnessLikeSymbols(int length) {
+        final int[] input = randomSymbols(new Random(42), length, 50000);
+        final Random random = new Random(43);
+        for (int i = length / 2; i < length; i++) {
+            if (random.nextInt(10) != 0) {
+                input[i] = input[i - length / 2];
+            }
+        }
+        return input;
+    }
+
+    private static long bestOf(Runnable run) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            final long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1000000);
+        }
+        return best;
+    }
+
+    private static int[] randomSymbols(Random random, int length, int alphabet) {
+        final int[] symbols = new int[length];
+        for (int i = 0; i < length; i++) {
+            symbols[i] = random.nextInt(alphabet);
+        }
+        return symbols;
+    }
+}
@@ -8,7 +8,9 @@ import eu.interedition.collatex.matching.EditDistanceTokenComparator;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
 import eu.interedition.collatex.simple.*;
 
-import javax.json.*;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
@@ -17,11 +19,15 @@ import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Created by ronald on 5/5/15.
@@ -36,124 +42,84 @@ public class SimpleCollationJSONMessageBodyReader implements MessageBodyReader<S
         return SimpleCollation.class.isAssignableFrom(type);
     }
 
+    /**
+     * Reads a collation from a stream of parser events, without building a tree of the whole request; the tokens of a
+     * witness are buffered as strings until its object ends.
+     */
     @Override
     public SimpleCollation readFrom(Class<SimpleCollation> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
-        try (JsonReader reader = Json.createReader(entityStream)) {
-            final JsonStructure collationNode = reader.read();
-            if (collationNode.getValueType() != JsonValue.ValueType.OBJECT) {
+        try (JsonParser parser = Json.createParser(entityStream)) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
                 throw new IOException("Expecting JSON object");
             }
-            final JsonObject collationObject = (JsonObject) collationNode;
 
-            JsonArray witnessesNode;
-            try {
-                witnessesNode = collationObject.getJsonArray("witnesses");
-            } catch (ClassCastException e) {
-                throw new IOException("Expecting 'witnesses' array");
-            }
-
-            final List<SimpleWitness> witnesses = new ArrayList<>(witnessesNode.size());
-
-            for (JsonValue witnessNode : witnessesNode) {
-                if (witnessNode.getValueType() != JsonValue.ValueType.OBJECT) {
-                    throw new IOException("Expecting witness object");
-                }
-                final JsonObject witnessObject = (JsonObject) witnessNode;
-
-                final String witnessId;
-                try {
-                    witnessId = witnessObject.getString("id").trim();
-                } catch (ClassCastException e) {
-                    throw new IOException("Expected textual witness 'id'");
-                }
-                if (witnessId.length() == 0) {
-                    throw new IOException("Empty witness 'id' encountered");
-                }
-
-                final SimpleWitness witness = new SimpleWitness(witnessId);
-                if (witnesses.contains(witness)) {
-                    throw new IOException(String.format("Duplicate sigil for witness '%s", witness));
-                }
-
-                final JsonValue contentNode = witnessObject.get("content");
-                final JsonValue tokensNode = witnessObject.get("tokens");
-                if (contentNode == null && tokensNode == null) {
-                    throw new IOException(String.format("Expected either 'tokens' or 'content' field in witness \"%s\"", witness));
-                }
-
-                if (tokensNode != null) {
-                    if (tokensNode.getValueType() != JsonValue.ValueType.ARRAY) {
-                        throw new IOException(String.format("Expected 'tokens' array in witness \"%s\"", witness));
-                    }
-                    final JsonArray tokensArray = (JsonArray) tokensNode;
-                    final List<eu.interedition.collatex.Token> tokens = new ArrayList<>(tokensArray.size());
-                    for (JsonValue tokenNode : tokensArray) {
-                        if (tokenNode.getValueType() != JsonValue.ValueType.OBJECT) {
-                            throw new IOException(String.format("Expected token object in 'tokens' field in witness \"%s\"", witness));
+            List<SimpleWitness> witnesses = null;
+            String tokenComparatorType = null;
+            int tokenComparatorDistance = 0;
+            String collationAlgorithmValue = null;
+            boolean joined = true;
+            boolean mergeTranspositions = true;
+            for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                final String key = parser.getString();
+                final JsonParser.Event value = parser.next();
+                switch (key) {
+                    case "witnesses":
+                        if (value != JsonParser.Event.START_ARRAY) {
+                            throw new IOException("Expecting 'witnesses' array");
                         }
-                        final JsonObject tokenObject = (JsonObject) tokenNode;
-                        String tokenContent;
-                        try {
-                            tokenContent = tokenObject.getString("t");
-                        } catch (ClassCastException | NullPointerException e) {
-                            throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", witness));
+                        witnesses = readWitnesses(parser);
+                        break;
+                    case "tokenComparator":
+                        if (value != JsonParser.Event.START_OBJECT) {
+                            skip(parser, value);
+                            break;
                         }
-
-                        String normalizedTokenContent;
-                        if (tokenObject.containsKey("n")) {
-                            try {
-                                normalizedTokenContent = tokenObject.getString("n");
-                            } catch (ClassCastException e) {
-                                throw new IOException(String.format("Expected textual normalized token content in witness \"%s\"", witness));
+                        for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                            final String tokenComparatorKey = parser.getString();
+                            final JsonParser.Event tokenComparatorValue = parser.next();
+                            if ("type".equals(tokenComparatorKey) && tokenComparatorValue == JsonParser.Event.VALUE_STRING) {
+                                tokenComparatorType = parser.getString();
+                            } else if ("distance".equals(tokenComparatorKey) && tokenComparatorValue == JsonParser.Event.VALUE_NUMBER) {
+                                tokenComparatorDistance = parser.getInt();
+                            } else {
+                                skip(parser, tokenComparatorValue);
                             }
-                        } else {
-                            normalizedTokenContent = SimpleWitness.TOKEN_NORMALIZER.apply(tokenContent);
                         }
-
-                        if (normalizedTokenContent == null || normalizedTokenContent.length() == 0) {
-                            throw new IOException(String.format("Empty token encountered in witness \"%s\"", witness));
-                        }
-
-                        tokens.add(new VariantGraphJSONMessageBodyWriter.Token(witness, tokenContent, normalizedTokenContent, tokenObject));
-                    }
-                    witness.setTokens(tokens);
-                } else {
-                    if (contentNode.getValueType() != JsonValue.ValueType.STRING) {
-                        throw new IOException(String.format("Expected 'content' text field in witness \"%s\"", witness));
-                    }
-                    witness.setTokenContents(
-                        SimplePatternTokenizer.BY_WS_OR_PUNCT.apply(((JsonString) contentNode).getString()),
-                        SimpleTokenNormalizers.LC_TRIM_WS
-                    );
+                        break;
+                    case "algorithm":
+                        collationAlgorithmValue = (value == JsonParser.Event.VALUE_STRING ? parser.getString() : null);
+                        skip(parser, value);
+                        break;
+                    case "joined":
+                        joined = booleanValue(value, joined);
+                        skip(parser, value);
+                        break;
+                    case "transpositions":
+                        mergeTranspositions = booleanValue(value, mergeTranspositions);
+                        skip(parser, value);
+                        break;
+                    default:
+                        skip(parser, value);
+                        break;
                 }
-                witnesses.add(witness);
             }
-
+            if (witnesses == null) {
+                throw new IOException("Expecting 'witnesses' array");
+            }
             if (witnesses.isEmpty()) {
                 throw new IOException("No witnesses in collation");
             }
 
             Comparator<Token> tokenComparator = null;
-            final JsonValue tokenComparatorNode = collationObject.get("tokenComparator");
-            if (tokenComparatorNode != null && tokenComparatorNode.getValueType() == JsonValue.ValueType.OBJECT) {
-                final JsonObject tokenComparatorObject = (JsonObject) tokenComparatorNode;
-                try {
-                    if ("levenshtein".equals(tokenComparatorObject.getString("type"))) {
-                        final int configuredDistance = tokenComparatorObject.getInt("distance", 0);
-                        tokenComparator = new EditDistanceTokenComparator(configuredDistance == 0 ? 1 : configuredDistance);
-                    }
-                } catch (ClassCastException e) {
-                    // ignored
-                }
+            if ("levenshtein".equals(tokenComparatorType)) {
+                tokenComparator = new EditDistanceTokenComparator(tokenComparatorDistance == 0 ? 1 : tokenComparatorDistance);
             }
             if (tokenComparator == null) {
                 tokenComparator = new EqualityTokenComparator();
             }
 
             CollationAlgorithm collationAlgorithm = null;
-            final JsonValue collationAlgorithmNode = collationObject.get("algorithm");
-            if (collationAlgorithmNode != null && collationAlgorithmNode.getValueType() == JsonValue.ValueType.STRING) {
-                final String collationAlgorithmValue = ((JsonString) collationAlgorithmNode).getString();
+            if (collationAlgorithmValue != null) {
                 if ("needleman-wunsch".equalsIgnoreCase(collationAlgorithmValue)) {
                     collationAlgorithm = CollationAlgorithmFactory.needlemanWunsch(tokenComparator);
                 } else if ("gst".equalsIgnoreCase(collationAlgorithmValue)) {
@@ -166,23 +132,259 @@ public class SimpleCollationJSONMessageBodyReader implements MessageBodyReader<S
                 collationAlgorithm = CollationAlgorithmFactory.dekker(tokenComparator);
             }
 
-            boolean joined = true;
-            try {
-                joined = collationObject.getBoolean("joined", true);
-            } catch (ClassCastException e) {
-                // ignored
-            }
-
             if (collationAlgorithm instanceof InspectableCollationAlgorithm) {
-                boolean mergeTranspositions = true;
-                try {
-                    mergeTranspositions = collationObject.getBoolean("transpositions", true);
-                } catch (ClassCastException e) {
-                    // ignored
-                }
                 ((InspectableCollationAlgorithm) collationAlgorithm).setMergeTranspositions(mergeTranspositions);
             }
             return new SimpleCollation(witnesses, collationAlgorithm, joined);
         }
     }
+
+    private static List<SimpleWitness> readWitnesses(JsonParser parser) throws IOException {
+        final List<SimpleWitness> witnesses = new ArrayList<>();
+        final Set<String> sigils = new HashSet<>();
+        final Function<String, String> tokenNormalizer = SimpleTokenNormalizers.memoizing(SimpleWitness.TOKEN_NORMALIZER);
+        final Function<String, String> contentNormalizer = SimpleTokenNormalizers.memoizing(SimpleTokenNormalizers.LC_TRIM_WS);
+
+        for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+            if (event != JsonParser.Event.START_OBJECT) {
+                throw new IOException("Expecting witness object");
+            }
+            final WitnessBuffer witness = new WitnessBuffer(witnesses.size() + 1);
+            for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                final String key = parser.getString();
+                final JsonParser.Event value = parser.next();
+                switch (key) {
+                    case "id":
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException("Expected textual witness 'id'");
+                        }
+                        witness.id = parser.getString().trim();
+                        break;
+                    case "content":
+                        witness.contentPresent = true;
+                        witness.content = (value == JsonParser.Event.VALUE_STRING ? parser.getString() : null);
+                        skip(parser, value);
+                        break;
+                    case "tokens":
+                        if (value != JsonParser.Event.START_ARRAY) {
+                            throw new IOException(String.format("Expected 'tokens' array in witness \"%s\"", witness));
+                        }
+                        witness.readTokens(parser);
+                        break;
+                    default:
+                        skip(parser, value);
+                        break;
+                }
+            }
+
+            if (witness.id == null) {
+                throw new IOException("Expected textual witness 'id'");
+            }
+            if (witness.id.length() == 0) {
+                throw new IOException("Empty witness 'id' encountered");
+            }
+            if (!sigils.add(witness.id)) {
+                throw new IOException(String.format("Duplicate sigil for witness '%s", witness.id));
+            }
+            if (witness.tokenContents == null) {
+                if (!witness.contentPresent) {
+                    throw new IOException(String.format("Expected either 'tokens' or 'content' field in witness \"%s\"", witness));
+                }
+                if (witness.content == null) {
+                    throw new IOException(String.format("Expected 'content' text field in witness \"%s\"", witness));
+                }
+            }
+            witnesses.add(witness.toWitness(tokenNormalizer, contentNormalizer));
+        }
+        return witnesses;
+    }
+
+    private static boolean booleanValue(JsonParser.Event value, boolean defaultValue) {
+        switch (value) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            default:
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Skips the value starting with the given event.
+     */
+    private static void skip(JsonParser parser, JsonParser.Event value) {
+        if (value != JsonParser.Event.START_OBJECT && value != JsonParser.Event.START_ARRAY) {
+            return;
+        }
+        for (int depth = 1; depth > 0; ) {
+            switch (parser.next()) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Copies the value starting with the given event to a generator, as a member of the given name or, if it is
+     * <code>null</code>, as an array element.
+     */
+    private static void copy(JsonParser parser, JsonParser.Event value, JsonGenerator generator, String name) {
+        switch (value) {
+            case START_OBJECT:
+                if (name == null) {
+                    generator.writeStartObject();
+                } else {
+                    generator.writeStartObject(name);
+                }
+                for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                    final String key = parser.getString();
+                    copy(parser, parser.next(), generator, key);
+                }
+                generator.writeEnd();
+                break;
+            case START_ARRAY:
+                if (name == null) {
+                    generator.writeStartArray();
+                } else {
+                    generator.writeStartArray(name);
+                }
+                for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                    copy(parser, event, generator, null);
+                }
+                generator.writeEnd();
+                break;
+            case VALUE_STRING:
+                if (name == null) {
+                    generator.write(parser.getString());
+                } else {
+                    generator.write(name, parser.getString());
+                }
+                break;
+            case VALUE_NUMBER:
+                if (name == null) {
+                    generator.write(parser.getBigDecimal());
+                } else {
+                    generator.write(name, parser.getBigDecimal());
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                if (name == null) {
+                    generator.write(value == JsonParser.Event.VALUE_TRUE);
+                } else {
+                    generator.write(name, value == JsonParser.Event.VALUE_TRUE);
+                }
+                break;
+            case VALUE_NULL:
+                if (name == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNull(name);
+                }
+                break;
+        }
+    }
+
+    /**
+     * The fields of a witness read so far. Tokens are kept as strings; fields of token objects other than their content
+     * are kept as the JSON text of an object, so that they can be written back.
+     */
+    private static class WitnessBuffer {
+
+        private final int number;
+
+        private String id;
+        private boolean contentPresent;
+        private String content;
+        private List<String> tokenContents;
+        private List<String> tokenNormalized;
+        private List<String> tokenFields;
+
+        private WitnessBuffer(int number) {
+            this.number = number;
+        }
+
+        private void readTokens(JsonParser parser) throws IOException {
+            tokenContents = new ArrayList<>();
+            tokenNormalized = new ArrayList<>();
+            tokenFields = new ArrayList<>();
+            for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                if (event != JsonParser.Event.START_OBJECT) {
+                    throw new IOException(String.format("Expected token object in 'tokens' field in witness \"%s\"", this));
+                }
+                String tokenContent = null;
+                String normalizedTokenContent = null;
+                StringWriter fields = null;
+                JsonGenerator fieldGenerator = null;
+                for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                    final String key = parser.getString();
+                    final JsonParser.Event value = parser.next();
+                    if ("t".equals(key)) {
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", this));
+                        }
+                        tokenContent = parser.getString();
+                        continue;
+                    }
+                    if ("n".equals(key)) {
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException(String.format("Expected textual normalized token content in witness \"%s\"", this));
+                        }
+                        normalizedTokenContent = parser.getString();
+                        if (normalizedTokenContent.length() == 0) {
+                            throw new IOException(String.format("Empty token encountered in witness \"%s\"", this));
+                        }
+                    }
+                    if (fieldGenerator == null) {
+                        fields = new StringWriter();
+                        fieldGenerator = Json.createGenerator(fields).writeStartObject();
+                    }
+                    copy(parser, value, fieldGenerator, key);
+                }
+                if (tokenContent == null) {
+                    throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", this));
+                }
+                if (fieldGenerator != null) {
+                    fieldGenerator.writeEnd().close();
+                }
+                tokenContents.add(tokenContent);
+                tokenNormalized.add(normalizedTokenContent);
+                tokenFields.add(fields == null ? null : fields.toString());
+            }
+        }
+
+        private SimpleWitness toWitness(Function<String, String> tokenNormalizer, Function<String, String> contentNormalizer) throws IOException {
+            final SimpleWitness witness = new SimpleWitness(id);
+            if (tokenContents != null) {
+                final List<Token> tokens = new ArrayList<>(tokenContents.size());
+                for (int tc = 0, tl = tokenContents.size(); tc < tl; tc++) {
+                    final String tokenContent = tokenContents.get(tc);
+                    String normalizedTokenContent = tokenNormalized.get(tc);
+                    if (normalizedTokenContent == null) {
+                        normalizedTokenContent = tokenNormalizer.apply(tokenContent);
+                    }
+                    if (normalizedTokenContent == null || normalizedTokenContent.length() == 0) {
+                        throw new IOException(String.format("Empty token encountered in witness \"%s\"", this));
+                    }
+                    tokens.add(new VariantGraphJSONMessageBodyWriter.Token(witness, tokenContent, normalizedTokenContent, tokenFields.get(tc)));
+                }
+                witness.setTokens(tokens);
+            } else {
+                witness.setTokenContents(SimplePatternTokenizer.BY_WS_OR_PUNCT.apply(content), contentNormalizer);
+            }
+            return witness;
+        }
+
+        @Override
+        public String toString() {
+            return (id == null ? "#" + number : id);
+        }
+    }
 }
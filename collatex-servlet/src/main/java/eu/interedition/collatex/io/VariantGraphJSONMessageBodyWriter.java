@@ -9,6 +9,8 @@ import eu.interedition.collatex.util.VariantGraphRanking;
 
 import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
 import javax.json.stream.JsonGenerator;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
@@ -18,6 +20,8 @@ import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.SortedMap;
@@ -92,17 +96,55 @@ public class VariantGraphJSONMessageBodyWriter implements MessageBodyWriter<Vari
         });
     }
 
+    /**
+     * A token read from a token object of a collation request, which is written back along with the fields it has been
+     * given besides its content.
+     */
     public static class Token extends SimpleToken {
-        private final JsonObject jsonNode;
 
-        public Token(SimpleWitness witness, String content, String normalized, JsonObject jsonNode) {
+        private final String fields;
+
+        /**
+         * @param fields the JSON text of an object with the token's fields other than its content, or <code>null</code>
+         *               if it has none
+         */
+        public Token(SimpleWitness witness, String content, String normalized, String fields) {
             super(witness, content, normalized);
-            this.jsonNode = jsonNode;
+            this.fields = fields;
+        }
+
+        /**
+         * @param jsonNode the token object, whose fields other than its content are kept in compact form
+         */
+        public Token(SimpleWitness witness, String content, String normalized, JsonObject jsonNode) {
+            this(witness, content, normalized, fields(jsonNode));
         }
 
         public JsonObject getJsonNode() {
-            return jsonNode;
+            final JsonObjectBuilder node = Json.createObjectBuilder().add("t", getContent());
+            if (fields != null) {
+                try (JsonReader reader = Json.createReader(new StringReader(fields))) {
+                    reader.readObject().forEach(node::add);
+                }
+            }
+            return node.build();
+        }
+
+        private static String fields(JsonObject jsonNode) {
+            if (jsonNode == null || jsonNode.keySet().stream().allMatch("t"::equals)) {
+                return null;
+            }
+            final StringWriter fields = new StringWriter();
+            try (JsonGenerator generator = Json.createGenerator(fields)) {
+                generator.writeStartObject();
+                jsonNode.forEach((key, value) -> {
+                    if (!"t".equals(key)) {
+                        generator.write(key, value);
+                    }
+                });
+                generator.writeEnd();
+            }
+            return fields.toString();
         }
     }
 }
-
@@ -41,13 +41,24 @@ import javax.xml.xpath.XPathFactory;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -56,6 +67,10 @@ import java.util.stream.Stream;
  */
 public class CollationPipe {
 
+    private static final int DECODING_BUFFER_SIZE = 8192;
+
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
     public static void start(CommandLine commandLine) throws Exception {
         List<SimpleWitness> witnesses = null;
         Function<String, Stream<String>> tokenizer = SimplePatternTokenizer.BY_WS_OR_PUNCT;
@@ -63,10 +78,17 @@ public class CollationPipe {
         Comparator<Token> comparator = new EqualityTokenComparator();
         CollationAlgorithm collationAlgorithm = null;
         boolean joined = true;
+        boolean scripted = false;
 
         final String[] witnessSpecs = commandLine.getArgs();
+        final File[] witnessFiles = new File[witnessSpecs.length];
         final InputStream[] inputStreams = new InputStream[witnessSpecs.length];
         for (int wc = 0, wl = witnessSpecs.length; wc < wl; wc++) {
+            // files are only opened when read, so that plain-text witnesses can be mapped instead
+            witnessFiles[wc] = argumentToFile(witnessSpecs[wc]);
+            if (witnessFiles[wc] != null) {
+                continue;
+            }
             try {
                 inputStreams[wc] = argumentToInputStream(witnessSpecs[wc]);
             } catch (MalformedURLException urlEx) {
@@ -77,7 +99,7 @@ public class CollationPipe {
         if (inputStreams.length < 1) {
             throw new ParseException("No input resource(s) given");
         } else if (inputStreams.length < 2) {
-            try (InputStream inputStream = inputStreams[0]) {
+            try (InputStream inputStream = open(witnessFiles[0], inputStreams[0])) {
                 final SimpleCollation collation = JsonProcessor.read(inputStream);
                 witnesses = collation.getWitnesses();
                 collationAlgorithm = collation.getAlgorithm();
@@ -92,8 +114,9 @@ public class CollationPipe {
                 : PluginScript.read(argumentToInput(script)));
 
             tokenizer = Optional.ofNullable(pluginScript.tokenizer()).orElse(tokenizer);
-            normalizer = Optional.ofNullable(pluginScript.normalizer()).orElse(normalizer);
+            normalizer = SimpleTokenNormalizers.memoizing(Optional.ofNullable(pluginScript.normalizer()).orElse(normalizer));
             comparator = Optional.ofNullable(pluginScript.comparator()).orElse(comparator);
+            scripted = (pluginScript.tokenizer || pluginScript.normalizer);
         } catch (IOException e) {
             throw new ParseException("Failed to read script '" + script + "' - " + e.getMessage());
         }
@@ -116,31 +139,35 @@ public class CollationPipe {
         if (witnesses == null) {
             final Charset inputCharset = Charset.forName(commandLine.getOptionValue("ie", StandardCharsets.UTF_8.name()));
             final boolean xmlMode = commandLine.hasOption("xml");
-            final XPathExpression tokenXPath = XPathFactory.newInstance().newXPath().compile(commandLine.getOptionValue("xp", "//text()"));
+            final String tokenPath = commandLine.getOptionValue("xp", "//text()");
 
-            witnesses = new ArrayList<>(inputStreams.length);
-            for (int wc = 0, wl = inputStreams.length; wc < wl; wc++) {
-                try (InputStream stream = inputStreams[wc]) {
-                    final String sigil = "w" + (wc + 1);
-                    if (!xmlMode) {
-                        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, inputCharset));
-                        final StringWriter writer = new StringWriter();
-                        final char[] buf = new char[1024];
-                        while (reader.read(buf) != -1) {
-                            writer.write(buf);
-                        }
-                        witnesses.add(new SimpleWitness(sigil, writer.toString(), tokenizer, normalizer));
-                    } else {
-                        final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                        final Document document = documentBuilder.parse(stream);
-                        document.normalizeDocument();
-
-                        final SimpleWitness witness = new SimpleWitness(sigil);
-                        final NodeList tokenNodes = (NodeList) tokenXPath.evaluate(document, XPathConstants.NODESET);
-                        final List<Token> tokens = new ArrayList<>(tokenNodes.getLength());
-                        for (int nc = 0; nc < tokenNodes.getLength(); nc++) {
-                            final String tokenText = tokenNodes.item(nc).getTextContent();
-                            tokens.add(new SimpleToken(witness, tokenText, normalizer.apply(tokenText)));
+            if (!xmlMode) {
+                // script engines are not thread-safe; scripted tokenizers and normalizers have to run one at a time
+                final int threads = (scripted ? 1 : Math.min(inputStreams.length, Runtime.getRuntime().availableProcessors()));
+                witnesses = readWitnesses(witnessFiles, inputStreams, inputCharset, tokenizer, normalizer, threads);
+            } else {
+                // stream tokens from witnesses if possible; fall back to XPath on DOMs for paths the extractor does not support
+                final XMLTokenExtractor tokenExtractor = XMLTokenExtractor.compile(tokenPath);
+                final XPathExpression tokenXPath = (tokenExtractor == null ? XPathFactory.newInstance().newXPath().compile(tokenPath) : null);
+                final Function<String, String> tokenNormalizer = normalizer;
+
+                witnesses = new ArrayList<>(inputStreams.length);
+                for (int wc = 0, wl = inputStreams.length; wc < wl; wc++) {
+                    try (InputStream stream = open(witnessFiles[wc], inputStreams[wc])) {
+                        final SimpleWitness witness = new SimpleWitness("w" + (wc + 1));
+                        final List<Token> tokens = new ArrayList<>();
+                        if (tokenExtractor != null) {
+                            tokenExtractor.extract(stream, tokenText -> tokens.add(new SimpleToken(witness, tokenText, tokenNormalizer.apply(tokenText))));
+                        } else {
+                            final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                            final Document document = documentBuilder.parse(stream);
+                            document.normalizeDocument();
+
+                            final NodeList tokenNodes = (NodeList) tokenXPath.evaluate(document, XPathConstants.NODESET);
+                            for (int nc = 0; nc < tokenNodes.getLength(); nc++) {
+                                final String tokenText = tokenNodes.item(nc).getTextContent();
+                                tokens.add(new SimpleToken(witness, tokenText, tokenNormalizer.apply(tokenText)));
+                            }
                         }
                         witness.setTokens(tokens);
                         witnesses.add(witness);
@@ -194,6 +221,115 @@ public class CollationPipe {
         }
     }
 
+    /**
+     * Reads, tokenizes and normalizes plain-text witnesses concurrently, using the given number of threads. Witnesses
+     * given as files are mapped into memory, all others are read from their streams.
+     */
+    private static List<SimpleWitness> readWitnesses(File[] witnessFiles,
+                                                     InputStream[] inputStreams,
+                                                     Charset charset,
+                                                     Function<String, Stream<String>> tokenizer,
+                                                     Function<String, String> normalizer,
+                                                     int threads) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<SimpleWitness>> readers = new ArrayList<>(inputStreams.length);
+            for (int wc = 0, wl = inputStreams.length; wc < wl; wc++) {
+                final String sigil = "w" + (wc + 1);
+                final File file = witnessFiles[wc];
+                final InputStream inputStream = inputStreams[wc];
+                readers.add(executor.submit(() -> {
+                    if (file != null) {
+                        return new SimpleWitness(sigil, readMapped(file.toPath(), charset, MAPPED_REGION_SIZE), tokenizer, normalizer);
+                    }
+                    try (InputStream stream = inputStream) {
+                        return new SimpleWitness(sigil, read(stream, charset), tokenizer, normalizer);
+                    }
+                }));
+            }
+            final List<SimpleWitness> witnesses = new ArrayList<>(readers.size());
+            for (Future<SimpleWitness> reader : readers) {
+                try {
+                    witnesses.add(reader.get());
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    throw (cause instanceof Exception ? (Exception) cause : e);
+                }
+            }
+            return witnesses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String read(InputStream stream, Charset charset) throws IOException {
+        final Reader reader = new InputStreamReader(stream, charset);
+        final StringBuilder text = new StringBuilder();
+        final char[] buf = new char[DECODING_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buf)) != -1) {
+            text.append(buf, 0, read);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Decodes a file region by region from memory-mapped buffers, so that its bytes are never copied onto the heap.
+     * Malformed input is replaced, like when decoding via a {@link InputStreamReader reader}.
+     *
+     * @param regionSize the number of bytes mapped at a time; regions too small to hold a single character are grown
+     */
+    static String readMapped(Path path, Charset charset, long regionSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            final StringBuilder text = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, (long) (size * decoder.averageCharsPerByte())));
+            final CharBuffer chars = CharBuffer.allocate(DECODING_BUFFER_SIZE);
+
+            long position = 0;
+            long mapped = regionSize;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                final long region = Math.min(mapped, size - position);
+                endOfInput = (position + region == size);
+
+                // a character spanning two regions is left undecoded and decoded from the start of the next region
+                final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, region);
+                while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                    drain(chars, text);
+                }
+                // a region holding only part of a character would be mapped again and again
+                mapped = (bytes.position() == 0 ? mapped * 2 : regionSize);
+                position += bytes.position();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, text);
+            }
+            drain(chars, text);
+            return text.toString();
+        }
+    }
+
+    private static void drain(CharBuffer chars, StringBuilder text) {
+        chars.flip();
+        text.append(chars);
+        chars.clear();
+    }
+
+    private static InputStream open(File file, InputStream stream) throws IOException {
+        return (file == null ? stream : new FileInputStream(file));
+    }
+
+    private static File argumentToFile(String arg) {
+        if ("-".equals(arg)) {
+            return null;
+        }
+        final File file = new File(arg);
+        return (file.isFile() ? file : null);
+    }
+
     private static URL argumentToInput(String arg) throws MalformedURLException {
         final File witnessFile = new File(arg);
         if (witnessFile.exists()) {
@@ -21,9 +21,7 @@ package eu.interedition.collatex.tools;
 
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.simple.SimpleCollation;
-import eu.interedition.collatex.simple.SimpleToken;
 import eu.interedition.collatex.simple.SimpleVariantGraphSerializer;
-import eu.interedition.collatex.simple.SimpleWitness;
 import org.apache.commons.cli.CommandLine;
 import org.glassfish.grizzly.EmptyCompletionHandler;
 import org.glassfish.grizzly.http.CompressionConfig;
@@ -129,16 +127,12 @@ public class CollationServer {
             return;
         }
 
-        final SimpleCollation collation = JsonProcessor.read(request.getInputStream());
-        if (maxCollationSize > 0) {
-            for (SimpleWitness witness : collation.getWitnesses()) {
-                final int witnessLength = witness.getTokens().stream()
-                        .filter(t -> t instanceof SimpleToken).map(t -> (SimpleToken) t).mapToInt(t -> t.getContent().length()).sum();
-                if (witnessLength > maxCollationSize) {
-                    response.sendError(413, "Request Entity Too Large");
-                    return;
-                }
-            }
+        final SimpleCollation collation;
+        try {
+            collation = JsonProcessor.read(request.getInputStream(), maxCollationSize);
+        } catch (JsonProcessor.WitnessTooLongException e) {
+            response.sendError(413, "Request Entity Too Large");
+            return;
         }
 
         response.suspend(60, TimeUnit.SECONDS, new EmptyCompletionHandler<>());
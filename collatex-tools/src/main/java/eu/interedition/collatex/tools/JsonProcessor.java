@@ -35,23 +35,32 @@ import eu.interedition.collatex.util.ParallelSegmentationApparatus;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
-import javax.json.JsonString;
-import javax.json.JsonStructure;
-import javax.json.JsonValue;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
 import java.util.stream.StreamSupport;
 
 /**
@@ -60,122 +69,104 @@ import java.util.stream.StreamSupport;
 public class JsonProcessor {
 
     public static SimpleCollation read(InputStream inputStream) throws IOException {
-        try (JsonReader reader = Json.createReader(inputStream)) {
-            final JsonStructure collationNode = reader.read();
-            if (collationNode.getValueType() != JsonValue.ValueType.OBJECT) {
-                throw new IOException("Expecting JSON object");
-            }
-            final JsonObject collationObject = (JsonObject) collationNode;
-
-            JsonArray witnessesNode;
-            try {
-                witnessesNode = collationObject.getJsonArray("witnesses");
-            } catch (ClassCastException e) {
-                throw new IOException("Expecting 'witnesses' array");
-            }
-
-            final List<SimpleWitness> witnesses = new ArrayList<>(witnessesNode.size());
-
-            for (JsonValue witnessNode : witnessesNode) {
-                if (witnessNode.getValueType() != JsonValue.ValueType.OBJECT) {
-                    throw new IOException("Expecting witness object");
-                }
-                final JsonObject witnessObject = (JsonObject) witnessNode;
-
-                final String witnessId;
-                try {
-                    witnessId = witnessObject.getString("id").trim();
-                } catch (ClassCastException e) {
-                    throw new IOException("Expected textual witness 'id'");
-                }
-                if (witnessId.length() == 0) {
-                    throw new IOException("Empty witness 'id' encountered");
-                }
+        return read(inputStream, 0);
+    }
 
-                final SimpleWitness witness = new SimpleWitness(witnessId);
-                if (witnesses.contains(witness)) {
-                    throw new IOException(String.format("Duplicate sigil for witness '%s", witness));
-                }
+    /**
+     * Reads a collation from a stream of parser events, without building a tree of the whole request: the tokens of a
+     * witness are buffered as strings until its object ends, and are then tokenized and normalized in the common pool,
+     * while reading continues.
+     *
+     * @param maxWitnessLength the maximum number of characters of the token contents of a witness; <code>0</code> for
+     *                         witnesses of any length
+     * @throws WitnessTooLongException as soon as a witness exceeds the maximum length
+     */
+    public static SimpleCollation read(InputStream inputStream, int maxWitnessLength) throws IOException {
+        return read(inputStream, maxWitnessLength, ForkJoinPool.commonPool());
+    }
 
-                final JsonValue contentNode = witnessObject.get("content");
-                final JsonValue tokensNode = witnessObject.get("tokens");
-                if (contentNode == null && tokensNode == null) {
-                    throw new IOException(String.format("Expected either 'tokens' or 'content' field in witness \"%s\"", witness));
-                }
+    /**
+     * @param executor runs the tasks tokenizing and normalizing witnesses
+     */
+    static SimpleCollation read(InputStream inputStream, int maxWitnessLength, Executor executor) throws IOException {
+        final List<Future<SimpleWitness>> witnesses = new ArrayList<>();
+        try (JsonParser parser = Json.createParser(inputStream)) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
+                throw new IOException("Expecting JSON object");
+            }
 
-                if (tokensNode != null) {
-                    if (tokensNode.getValueType() != JsonValue.ValueType.ARRAY) {
-                        throw new IOException(String.format("Expected 'tokens' array in witness \"%s\"", witness));
-                    }
-                    final JsonArray tokensArray = (JsonArray) tokensNode;
-                    final List<eu.interedition.collatex.Token> tokens = new ArrayList<>(tokensArray.size());
-                    for (JsonValue tokenNode : tokensArray) {
-                        if (tokenNode.getValueType() != JsonValue.ValueType.OBJECT) {
-                            throw new IOException(String.format("Expected token object in 'tokens' field in witness \"%s\"", witness));
+            boolean witnessesRead = false;
+            String tokenComparatorType = null;
+            int tokenComparatorDistance = 0;
+            String collationAlgorithmValue = null;
+            boolean joined = true;
+            boolean mergeTranspositions = true;
+            for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                final String key = parser.getString();
+                final JsonParser.Event value = parser.next();
+                switch (key) {
+                    case "witnesses":
+                        if (value != JsonParser.Event.START_ARRAY) {
+                            throw new IOException("Expecting 'witnesses' array");
                         }
-                        final JsonObject tokenObject = (JsonObject) tokenNode;
-                        String tokenContent;
-                        try {
-                            tokenContent = tokenObject.getString("t");
-                        } catch (ClassCastException | NullPointerException e) {
-                            throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", witness));
+                        cancel(witnesses);
+                        witnesses.clear();
+                        readWitnesses(parser, maxWitnessLength, executor, witnesses);
+                        witnessesRead = true;
+                        break;
+                    case "tokenComparator":
+                        if (value != JsonParser.Event.START_OBJECT) {
+                            skip(parser, value);
+                            break;
                         }
-
-                        String normalizedTokenContent;
-                        if (tokenObject.containsKey("n")) {
-                            try {
-                                normalizedTokenContent = tokenObject.getString("n");
-                            } catch (ClassCastException e) {
-                                throw new IOException(String.format("Expected textual normalized token content in witness \"%s\"", witness));
+                        for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                            final String tokenComparatorKey = parser.getString();
+                            final JsonParser.Event tokenComparatorValue = parser.next();
+                            if ("type".equals(tokenComparatorKey) && tokenComparatorValue == JsonParser.Event.VALUE_STRING) {
+                                tokenComparatorType = parser.getString();
+                            } else if ("distance".equals(tokenComparatorKey) && tokenComparatorValue == JsonParser.Event.VALUE_NUMBER) {
+                                tokenComparatorDistance = parser.getInt();
+                            } else {
+                                skip(parser, tokenComparatorValue);
                             }
-                        } else {
-                            normalizedTokenContent = SimpleWitness.TOKEN_NORMALIZER.apply(tokenContent);
                         }
-
-                        if (normalizedTokenContent == null || normalizedTokenContent.length() == 0) {
-                            throw new IOException(String.format("Empty token encountered in witness \"%s\"", witness));
-                        }
-
-                        tokens.add(new Token(witness, tokenContent, normalizedTokenContent, tokenObject));
-                    }
-                    witness.setTokens(tokens);
-                } else {
-                    if (contentNode.getValueType() != JsonValue.ValueType.STRING) {
-                        throw new IOException(String.format("Expected 'content' text field in witness \"%s\"", witness));
-                    }
-                    witness.setTokenContents(
-                        SimplePatternTokenizer.BY_WS_OR_PUNCT.apply(((JsonString) contentNode).getString()),
-                        SimpleTokenNormalizers.LC_TRIM_WS
-                    );
+                        break;
+                    case "algorithm":
+                        collationAlgorithmValue = (value == JsonParser.Event.VALUE_STRING ? parser.getString() : null);
+                        skip(parser, value);
+                        break;
+                    case "joined":
+                        joined = booleanValue(value, joined);
+                        skip(parser, value);
+                        break;
+                    case "transpositions":
+                        mergeTranspositions = booleanValue(value, mergeTranspositions);
+                        skip(parser, value);
+                        break;
+                    default:
+                        skip(parser, value);
+                        break;
                 }
-                witnesses.add(witness);
+            }
+            if (!witnessesRead) {
+                throw new IOException("Expecting 'witnesses' array");
             }
 
-            if (witnesses.isEmpty()) {
+            final List<SimpleWitness> preparedWitnesses = prepared(witnesses);
+            if (preparedWitnesses.isEmpty()) {
                 throw new IOException("No witnesses in collation");
             }
 
             Comparator<eu.interedition.collatex.Token> tokenComparator = null;
-            final JsonValue tokenComparatorNode = collationObject.get("tokenComparator");
-            if (tokenComparatorNode != null && tokenComparatorNode.getValueType() == JsonValue.ValueType.OBJECT) {
-                final JsonObject tokenComparatorObject = (JsonObject) tokenComparatorNode;
-                try {
-                    if ("levenshtein".equals(tokenComparatorObject.getString("type"))) {
-                        final int configuredDistance = tokenComparatorObject.getInt("distance", 0);
-                        tokenComparator = new EditDistanceTokenComparator(configuredDistance == 0 ? 1 : configuredDistance);
-                    }
-                } catch (ClassCastException e) {
-                    // ignored
-                }
+            if ("levenshtein".equals(tokenComparatorType)) {
+                tokenComparator = new EditDistanceTokenComparator(tokenComparatorDistance == 0 ? 1 : tokenComparatorDistance);
             }
             if (tokenComparator == null) {
                 tokenComparator = new EqualityTokenComparator();
             }
 
             CollationAlgorithm collationAlgorithm = null;
-            final JsonValue collationAlgorithmNode = collationObject.get("algorithm");
-            if (collationAlgorithmNode != null && collationAlgorithmNode.getValueType() == JsonValue.ValueType.STRING) {
-                final String collationAlgorithmValue = ((JsonString) collationAlgorithmNode).getString();
+            if (collationAlgorithmValue != null) {
                 if ("needleman-wunsch".equalsIgnoreCase(collationAlgorithmValue)) {
                     collationAlgorithm = CollationAlgorithmFactory.needlemanWunsch(tokenComparator);
                 } else if ("gst".equalsIgnoreCase(collationAlgorithmValue)) {
@@ -188,23 +179,329 @@ public class JsonProcessor {
                 collationAlgorithm = CollationAlgorithmFactory.dekker(tokenComparator);
             }
 
-            boolean joined = true;
-            try {
-                joined = collationObject.getBoolean("joined", true);
-            } catch (ClassCastException e) {
-                // ignored
+            if (collationAlgorithm instanceof InspectableCollationAlgorithm) {
+                ((InspectableCollationAlgorithm) collationAlgorithm).setMergeTranspositions(mergeTranspositions);
             }
+            return new SimpleCollation(preparedWitnesses, collationAlgorithm, joined);
+        } finally {
+            cancel(witnesses);
+        }
+    }
 
-            if (collationAlgorithm instanceof InspectableCollationAlgorithm) {
-                boolean mergeTranspositions = true;
-                try {
-                    mergeTranspositions = collationObject.getBoolean("transpositions", true);
-                } catch (ClassCastException e) {
-                    // ignored
+    private static void readWitnesses(JsonParser parser, int maxWitnessLength, Executor executor, List<Future<SimpleWitness>> witnesses) throws IOException {
+        final Set<String> sigils = new HashSet<>();
+        final Function<String, String> tokenNormalizer = SimpleTokenNormalizers.memoizing(SimpleWitness.TOKEN_NORMALIZER);
+        final Function<String, String> contentNormalizer = SimpleTokenNormalizers.memoizing(SimpleTokenNormalizers.LC_TRIM_WS);
+
+        for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+            if (event != JsonParser.Event.START_OBJECT) {
+                throw new IOException("Expecting witness object");
+            }
+            final WitnessBuffer witness = new WitnessBuffer(witnesses.size() + 1, maxWitnessLength);
+            for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                final String key = parser.getString();
+                final JsonParser.Event value = parser.next();
+                switch (key) {
+                    case "id":
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException("Expected textual witness 'id'");
+                        }
+                        witness.id = parser.getString().trim();
+                        break;
+                    case "content":
+                        witness.contentPresent = true;
+                        witness.content = (value == JsonParser.Event.VALUE_STRING ? parser.getString() : null);
+                        skip(parser, value);
+                        if (witness.content != null) {
+                            witness.checkContentLength();
+                        }
+                        break;
+                    case "tokens":
+                        if (value != JsonParser.Event.START_ARRAY) {
+                            throw new IOException(String.format("Expected 'tokens' array in witness \"%s\"", witness));
+                        }
+                        witness.readTokens(parser);
+                        break;
+                    default:
+                        skip(parser, value);
+                        break;
                 }
-                ((InspectableCollationAlgorithm) collationAlgorithm).setMergeTranspositions(mergeTranspositions);
             }
-            return new SimpleCollation(witnesses, collationAlgorithm, joined);
+
+            if (witness.id == null) {
+                throw new IOException("Expected textual witness 'id'");
+            }
+            if (witness.id.length() == 0) {
+                throw new IOException("Empty witness 'id' encountered");
+            }
+            if (!sigils.add(witness.id)) {
+                throw new IOException(String.format("Duplicate sigil for witness '%s", witness.id));
+            }
+            if (witness.tokenContents == null) {
+                if (!witness.contentPresent) {
+                    throw new IOException(String.format("Expected either 'tokens' or 'content' field in witness \"%s\"", witness));
+                }
+                if (witness.content == null) {
+                    throw new IOException(String.format("Expected 'content' text field in witness \"%s\"", witness));
+                }
+            }
+            final FutureTask<SimpleWitness> preparation = new FutureTask<>(() -> witness.toWitness(tokenNormalizer, contentNormalizer));
+            witnesses.add(preparation);
+            executor.execute(preparation);
+        }
+    }
+
+    /**
+     * Waits for witnesses being tokenized and normalized, keeping them in the order in which they have been read.
+     */
+    private static List<SimpleWitness> prepared(List<Future<SimpleWitness>> preparations) throws IOException {
+        final List<SimpleWitness> witnesses = new ArrayList<>(preparations.size());
+        try {
+            for (Future<SimpleWitness> witness : preparations) {
+                witnesses.add(witness.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return witnesses;
+    }
+
+    private static void cancel(List<Future<SimpleWitness>> preparations) {
+        preparations.forEach(preparation -> preparation.cancel(false));
+    }
+
+    private static boolean booleanValue(JsonParser.Event value, boolean defaultValue) {
+        switch (value) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            default:
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Skips the value starting with the given event.
+     */
+    private static void skip(JsonParser parser, JsonParser.Event value) {
+        if (value != JsonParser.Event.START_OBJECT && value != JsonParser.Event.START_ARRAY) {
+            return;
+        }
+        for (int depth = 1; depth > 0; ) {
+            switch (parser.next()) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Copies the value starting with the given event to a generator, as a member of the given name or, if it is
+     * <code>null</code>, as an array element.
+     */
+    private static void copy(JsonParser parser, JsonParser.Event value, JsonGenerator generator, String name) {
+        switch (value) {
+            case START_OBJECT:
+                if (name == null) {
+                    generator.writeStartObject();
+                } else {
+                    generator.writeStartObject(name);
+                }
+                for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                    final String key = parser.getString();
+                    copy(parser, parser.next(), generator, key);
+                }
+                generator.writeEnd();
+                break;
+            case START_ARRAY:
+                if (name == null) {
+                    generator.writeStartArray();
+                } else {
+                    generator.writeStartArray(name);
+                }
+                for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                    copy(parser, event, generator, null);
+                }
+                generator.writeEnd();
+                break;
+            case VALUE_STRING:
+                if (name == null) {
+                    generator.write(parser.getString());
+                } else {
+                    generator.write(name, parser.getString());
+                }
+                break;
+            case VALUE_NUMBER:
+                if (name == null) {
+                    generator.write(parser.getBigDecimal());
+                } else {
+                    generator.write(name, parser.getBigDecimal());
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                if (name == null) {
+                    generator.write(value == JsonParser.Event.VALUE_TRUE);
+                } else {
+                    generator.write(name, value == JsonParser.Event.VALUE_TRUE);
+                }
+                break;
+            case VALUE_NULL:
+                if (name == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNull(name);
+                }
+                break;
+        }
+    }
+
+    /**
+     * The fields of a witness read so far. Tokens are kept as strings; fields of token objects other than their content
+     * are kept as the JSON text of an object, so that they can be written back.
+     */
+    private static class WitnessBuffer {
+
+        private final int number;
+        private final int maxLength;
+
+        private String id;
+        private boolean contentPresent;
+        private String content;
+        private List<String> tokenContents;
+        private List<String> tokenNormalized;
+        private List<String> tokenFields;
+        private long length;
+
+        private WitnessBuffer(int number, int maxLength) {
+            this.number = number;
+            this.maxLength = maxLength;
+        }
+
+        private void readTokens(JsonParser parser) throws IOException {
+            tokenContents = new ArrayList<>();
+            tokenNormalized = new ArrayList<>();
+            tokenFields = new ArrayList<>();
+            for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                if (event != JsonParser.Event.START_OBJECT) {
+                    throw new IOException(String.format("Expected token object in 'tokens' field in witness \"%s\"", this));
+                }
+                String tokenContent = null;
+                String normalizedTokenContent = null;
+                StringWriter fields = null;
+                JsonGenerator fieldGenerator = null;
+                for (event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+                    final String key = parser.getString();
+                    final JsonParser.Event value = parser.next();
+                    if ("t".equals(key)) {
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", this));
+                        }
+                        tokenContent = parser.getString();
+                        continue;
+                    }
+                    if ("n".equals(key)) {
+                        if (value != JsonParser.Event.VALUE_STRING) {
+                            throw new IOException(String.format("Expected textual normalized token content in witness \"%s\"", this));
+                        }
+                        normalizedTokenContent = parser.getString();
+                        if (normalizedTokenContent.length() == 0) {
+                            throw new IOException(String.format("Empty token encountered in witness \"%s\"", this));
+                        }
+                    }
+                    if (fieldGenerator == null) {
+                        fields = new StringWriter();
+                        fieldGenerator = Json.createGenerator(fields).writeStartObject();
+                    }
+                    copy(parser, value, fieldGenerator, key);
+                }
+                if (tokenContent == null) {
+                    throw new IOException(String.format("Expected textual token content field 't' in witness \"%s\"", this));
+                }
+                if (fieldGenerator != null) {
+                    fieldGenerator.writeEnd().close();
+                }
+                tokenContents.add(tokenContent);
+                tokenNormalized.add(normalizedTokenContent);
+                tokenFields.add(fields == null ? null : fields.toString());
+                checkLength(tokenContent.length());
+            }
+        }
+
+        private void checkLength(int tokenLength) throws WitnessTooLongException {
+            length += tokenLength;
+            if (maxLength > 0 && length > maxLength) {
+                throw new WitnessTooLongException(String.format("Witness \"%s\" exceeds %d characters", this, maxLength));
+            }
+        }
+
+        /**
+         * Checks the length of the tokens the content will be split into, i.e. the content without leading whitespace, so
+         * that a witness given as text is rejected before it is tokenized.
+         */
+        private void checkContentLength() throws WitnessTooLongException {
+            int start = 0;
+            while (start < content.length() && " \t\n\u000B\f\r".indexOf(content.charAt(start)) >= 0) {
+                start++;
+            }
+            if (maxLength > 0 && content.length() - start > maxLength) {
+                throw new WitnessTooLongException(String.format("Witness \"%s\" exceeds %d characters", this, maxLength));
+            }
+        }
+
+        private SimpleWitness toWitness(Function<String, String> tokenNormalizer, Function<String, String> contentNormalizer) throws IOException {
+            final SimpleWitness witness = new SimpleWitness(id);
+            if (tokenContents != null) {
+                final List<eu.interedition.collatex.Token> tokens = new ArrayList<>(tokenContents.size());
+                for (int tc = 0, tl = tokenContents.size(); tc < tl; tc++) {
+                    final String tokenContent = tokenContents.get(tc);
+                    String normalizedTokenContent = tokenNormalized.get(tc);
+                    if (normalizedTokenContent == null) {
+                        normalizedTokenContent = tokenNormalizer.apply(tokenContent);
+                    }
+                    if (normalizedTokenContent == null || normalizedTokenContent.length() == 0) {
+                        throw new IOException(String.format("Empty token encountered in witness \"%s\"", this));
+                    }
+                    tokens.add(new Token(witness, tokenContent, normalizedTokenContent, tokenFields.get(tc)));
+                }
+                witness.setTokens(tokens);
+            } else {
+                witness.setTokenContents(SimplePatternTokenizer.BY_WS_OR_PUNCT.apply(content), contentNormalizer);
+            }
+            return witness;
+        }
+
+        @Override
+        public String toString() {
+            return (id == null ? "#" + number : id);
+        }
+    }
+
+    /**
+     * Signals that a witness of a collation exceeds the maximum length given when reading it.
+     */
+    public static class WitnessTooLongException extends IOException {
+
+        public WitnessTooLongException(String message) {
+            super(message);
         }
     }
 
@@ -263,17 +560,55 @@ public class JsonProcessor {
         });
     }
 
+    /**
+     * A token read from a token object of a collation request, which is written back along with the fields it has been
+     * given besides its content.
+     */
     public static class Token extends SimpleToken {
 
-        private final JsonObject jsonNode;
+        private final String fields;
 
-        public Token(SimpleWitness witness, String content, String normalized, JsonObject jsonNode) {
+        /**
+         * @param fields the JSON text of an object with the token's fields other than its content, or <code>null</code>
+         *               if it has none
+         */
+        public Token(SimpleWitness witness, String content, String normalized, String fields) {
             super(witness, content, normalized);
-            this.jsonNode = jsonNode;
+            this.fields = fields;
+        }
+
+        /**
+         * @param jsonNode the token object, whose fields other than its content are kept in compact form
+         */
+        public Token(SimpleWitness witness, String content, String normalized, JsonObject jsonNode) {
+            this(witness, content, normalized, fields(jsonNode));
         }
 
         public JsonObject getJsonNode() {
-            return jsonNode;
+            final JsonObjectBuilder node = Json.createObjectBuilder().add("t", getContent());
+            if (fields != null) {
+                try (JsonReader reader = Json.createReader(new StringReader(fields))) {
+                    reader.readObject().forEach(node::add);
+                }
+            }
+            return node.build();
+        }
+
+        private static String fields(JsonObject jsonNode) {
+            if (jsonNode == null || jsonNode.keySet().stream().allMatch("t"::equals)) {
+                return null;
+            }
+            final StringWriter fields = new StringWriter();
+            try (JsonGenerator generator = Json.createGenerator(fields)) {
+                generator.writeStartObject();
+                jsonNode.forEach((key, value) -> {
+                    if (!"t".equals(key)) {
+                        generator.write(key, value);
+                    }
+                });
+                generator.writeEnd();
+            }
+            return fields.toString();
         }
     }
 
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.tools;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts tokens from XML documents in a single pass over their parse events, selecting them by a subset of XPath 1.0
+ * location paths: absolute paths of child (<code>/</code>) and descendant (<code>//</code>) steps, testing for element
+ * names, <code>*</code> or, in the last step, <code>text()</code>, and optionally filtered by attribute predicates like
+ * <code>[@type]</code> or <code>[@type='word']</code>.
+ * <p>
+ * Tokens are either the string values of selected elements or runs of character data, and they are emitted in document
+ * order. Only the text of selected elements which are still open is buffered, so that memory use is bounded by the size
+ * of the tokens rather than the size of the document.
+ * <p>
+ * Names in the path are compared to the qualified names of elements and attributes as written in the document,
+ * disregarding namespace URIs, as XPath does for documents parsed without namespace awareness. A path like
+ * <code>//w</code> thus selects the <code>w</code> elements of TEI documents, which use a default namespace, but no
+ * elements named <code>x:w</code>, and <code>[@type]</code> does not test for <code>x:type</code> attributes. Paths with
+ * prefixed names are not supported. The XPath processor of the JDK, which is used for other paths, is not consistent in
+ * this respect: on such documents, its child steps and attribute tests also match prefixed names by their local part.
+ */
+class XMLTokenExtractor {
+
+    private static final Pattern STEP = Pattern.compile(
+        "(//?)(text\\(\\)|\\*|[\\p{L}_][\\p{L}\\d_.\\-]*)((?:\\[[^\\]]*\\])*)"
+    );
+
+    private static final Pattern PREDICATE = Pattern.compile(
+        "\\[\\s*@([\\p{L}_][\\p{L}\\d_.\\-]*)\\s*(?:=\\s*(?:'([^']*)'|\"([^\"]*)\")\\s*)?\\]"
+    );
+
+    private final Step[] steps;
+
+    private XMLTokenExtractor(Step[] steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * @return an extractor for the given path, or <code>null</code> if the path is not in the supported subset
+     */
+    static XMLTokenExtractor compile(String path) {
+        final String expression = path.trim();
+        final List<Step> steps = new ArrayList<>();
+        final Matcher step = STEP.matcher(expression);
+        int position = 0;
+        while (position < expression.length()) {
+            if (!step.region(position, expression.length()).lookingAt()) {
+                return null;
+            }
+            final String test = step.group(2);
+            final boolean text = "text()".equals(test);
+            if (!steps.isEmpty() && steps.get(steps.size() - 1).text) {
+                return null;
+            }
+
+            final List<String> attributes = new ArrayList<>();
+            final List<String> values = new ArrayList<>();
+            final String predicates = step.group(3);
+            final Matcher predicate = PREDICATE.matcher(predicates);
+            int predicatePosition = 0;
+            while (predicatePosition < predicates.length()) {
+                if (!predicate.region(predicatePosition, predicates.length()).lookingAt()) {
+                    return null;
+                }
+                if ("xmlns".equals(predicate.group(1))) {
+                    return null;
+                }
+                attributes.add(predicate.group(1));
+                values.add(predicate.group(2) != null ? predicate.group(2) : predicate.group(3));
+                predicatePosition = predicate.end();
+            }
+            if (text && !attributes.isEmpty()) {
+                return null;
+            }
+
+            steps.add(new Step(
+                "//".equals(step.group(1)),
+                text,
+                (text || "*".equals(test) ? null : test),
+                attributes.toArray(new String[attributes.size()]),
+                values.toArray(new String[values.size()])
+            ));
+            position = step.end();
+        }
+        return (steps.isEmpty() || steps.size() >= Long.SIZE ? null : new XMLTokenExtractor(steps.toArray(new Step[steps.size()])));
+    }
+
+    void extract(InputStream input, Consumer<String> tokens) throws XMLStreamException {
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+        try {
+            new Extraction(reader, tokens).run();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The state of extracting tokens from one document.
+     * <p>
+     * Each open element is assigned a bitmask of the steps matched so far: bit <i>i</i> is set, if the element matches
+     * the first <i>i</i> steps of the path, or if it is a descendant of such an element and step <i>i</i> is a descendant
+     * step. Elements with the bit beyond the last step set are selected; character data is selected, if the last step
+     * tests for text and its bit is set for the enclosing element.
+     */
+    private class Extraction {
+
+        private final XMLStreamReader reader;
+        private final Consumer<String> tokens;
+        private final long selected = (1L << steps.length);
+        private final long textSelected = (steps[steps.length - 1].text ? (1L << (steps.length - 1)) : 0);
+
+        private long[] states = new long[16];
+        private boolean[] selectedElements = new boolean[16];
+        private int depth = 0;
+
+        private final StringBuilder text = new StringBuilder();
+        private final Deque<ElementToken> pending = new ArrayDeque<>();
+        private final List<ElementToken> open = new ArrayList<>();
+
+        private Extraction(XMLStreamReader reader, Consumer<String> tokens) {
+            this.reader = reader;
+            this.tokens = tokens;
+            this.states[0] = 1L;
+        }
+
+        private void run() throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        emitText();
+                        startElement();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        emitText();
+                        endElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        if (depth > 0) {
+                            characters();
+                        }
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        // like in the XPath data model, comments and processing instructions delimit text nodes
+                        emitText();
+                        break;
+                }
+            }
+            emitText();
+        }
+
+        private void startElement() {
+            final long parent = states[depth];
+            long state = 0;
+            for (int sc = 0; sc < steps.length; sc++) {
+                if ((parent & (1L << sc)) == 0) {
+                    continue;
+                }
+                if (steps[sc].descendant) {
+                    state |= (1L << sc);
+                }
+                if (steps[sc].matches(reader)) {
+                    state |= (1L << (sc + 1));
+                }
+            }
+
+            if (++depth == states.length) {
+                states = Arrays.copyOf(states, depth * 2);
+                selectedElements = Arrays.copyOf(selectedElements, depth * 2);
+            }
+            states[depth] = state;
+            selectedElements[depth] = ((state & selected) != 0);
+            if (selectedElements[depth]) {
+                final ElementToken token = new ElementToken();
+                pending.add(token);
+                open.add(token);
+            }
+        }
+
+        private void endElement() {
+            if (selectedElements[depth]) {
+                open.remove(open.size() - 1).complete = true;
+                while (!pending.isEmpty() && pending.peek().complete) {
+                    tokens.accept(pending.remove().text.toString());
+                }
+            }
+            depth--;
+        }
+
+        private void characters() {
+            for (ElementToken token : open) {
+                token.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            if ((states[depth] & textSelected) != 0) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+
+        private void emitText() {
+            if (text.length() > 0) {
+                tokens.accept(text.toString());
+                text.setLength(0);
+            }
+        }
+    }
+
+    private static class ElementToken {
+        private final StringBuilder text = new StringBuilder();
+        private boolean complete;
+    }
+
+    private static class Step {
+
+        private final boolean descendant;
+        private final boolean text;
+        private final String name;
+        private final String[] attributes;
+        private final String[] values;
+
+        private Step(boolean descendant, boolean text, String name, String[] attributes, String[] values) {
+            this.descendant = descendant;
+            this.text = text;
+            this.name = name;
+            this.attributes = attributes;
+            this.values = values;
+        }
+
+        private boolean matches(XMLStreamReader element) {
+            if (text) {
+                return false;
+            }
+            if (name != null && (hasPrefix(element.getPrefix()) || !name.equals(element.getLocalName()))) {
+                return false;
+            }
+            for (int ac = 0; ac < attributes.length; ac++) {
+                final String value = attributeValue(element, attributes[ac]);
+                if (value == null || (values[ac] != null && !values[ac].equals(value))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String attributeValue(XMLStreamReader element, String name) {
+            for (int ac = 0, al = element.getAttributeCount(); ac < al; ac++) {
+                if (name.equals(element.getAttributeLocalName(ac)) && !hasPrefix(element.getAttributePrefix(ac))) {
+                    return element.getAttributeValue(ac);
+                }
+            }
+            return null;
+        }
+
+        private static boolean hasPrefix(String prefix) {
+            return (prefix != null && !prefix.isEmpty());
+        }
+    }
+}
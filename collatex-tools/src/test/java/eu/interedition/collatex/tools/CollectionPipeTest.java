@@ -2,6 +2,8 @@ package eu.interedition.collatex.tools;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -63,4 +65,19 @@ public class CollectionPipeTest {
         final CommandLine commandLine = new GnuParser().parse(CollateX.OPTIONS, args);
         CollationPipe.start(commandLine);
     }
+
+    @Test
+    public void readsMappedRegionsSplittingCharacters() throws Exception {
+        // characters of one to four bytes in UTF-8, so that small regions end within all of them
+        final String text = "a\u00e9\u20ac\ud834\udd1e b \u00e9\u00e9 \u20ac\ud834\udd1e z";
+        final Path file = Files.createTempFile("witness", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            for (int regionSize = 1; regionSize <= 8; regionSize++) {
+                assertEquals(text, CollationPipe.readMapped(file, StandardCharsets.UTF_8, regionSize));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
 }
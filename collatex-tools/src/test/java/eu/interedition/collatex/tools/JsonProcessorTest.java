@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.tools;
+
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.simple.SimpleCollation;
+import eu.interedition.collatex.simple.SimpleToken;
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class JsonProcessorTest {
+
+    @Test
+    public void readsContentAndTokens() throws IOException {
+        final SimpleCollation collation = read("{'witnesses': [{'id': 'A', 'content': 'The black Cat.'}, {'id': ' B ', 'tokens': [{'t': 'Dog'}, {'t': 'Cat', 'n': 'kat'}]}]}", 0);
+        final List<SimpleWitness> witnesses = collation.getWitnesses();
+        assertEquals(2, witnesses.size());
+        assertEquals("A", witnesses.get(0).getSigil());
+        assertEquals("the black cat .", normalized(witnesses.get(0)));
+        assertEquals("B", witnesses.get(1).getSigil());
+        assertEquals("dog kat", normalized(witnesses.get(1)));
+    }
+
+    @Test
+    public void rejectsMissingId() {
+        assertRejected("{'witnesses': [{'content': 'a'}]}", "Expected textual witness 'id'");
+        assertRejected("{'witnesses': [{'id': 1, 'content': 'a'}]}", "Expected textual witness 'id'");
+    }
+
+    @Test
+    public void rejectsEmptyId() {
+        assertRejected("{'witnesses': [{'id': ' ', 'content': 'a'}]}", "Empty witness 'id' encountered");
+    }
+
+    @Test
+    public void rejectsDuplicateSigils() {
+        assertRejected("{'witnesses': [{'id': 'A', 'content': 'a'}, {'id': 'B', 'content': 'b'}, {'id': ' A', 'content': 'c'}]}", "Duplicate sigil for witness 'A");
+    }
+
+    @Test
+    public void keepsWitnessOrder() throws IOException {
+        final Queue<Integer> finished = new ConcurrentLinkedQueue<>();
+        final SimpleCollation collation = read("{'witnesses': [{'id': 'A', 'content': 'a'}, {'id': 'B', 'content': 'b'}, {'id': 'C', 'content': 'c'}]}", lastFinishingFirst(3, finished));
+        assertEquals("A B C", collation.getWitnesses().stream().map(SimpleWitness::getSigil).collect(Collectors.joining(" ")));
+        assertEquals(3, finished.size());
+        assertEquals(Integer.valueOf(0), finished.toArray()[2]);
+    }
+
+    @Test
+    public void rethrowsFirstFailure() {
+        final Queue<Integer> finished = new ConcurrentLinkedQueue<>();
+        try {
+            // empty tokens are only detected once witnesses are prepared
+            read("{'witnesses': [{'id': 'A', 'tokens': [{'t': ''}]}, {'id': 'B', 'content': 'b'}, {'id': 'C', 'tokens': [{'t': ''}]}]}", lastFinishingFirst(3, finished));
+            fail();
+        } catch (IOException e) {
+            assertEquals("Empty token encountered in witness \"A\"", e.getMessage());
+        }
+        assertEquals(3, finished.size());
+        assertEquals(Integer.valueOf(0), finished.toArray()[2]);
+    }
+
+    @Test
+    public void rejectsNonTextualTokens() {
+        assertRejected("{'witnesses': [{'id': 'A', 'tokens': [{'t': 1}]}]}", "Expected textual token content field 't' in witness \"A\"");
+        assertRejected("{'witnesses': [{'id': 'A', 'tokens': [{'n': 'a'}]}]}", "Expected textual token content field 't' in witness \"A\"");
+        assertRejected("{'witnesses': [{'id': 'A', 'tokens': [{'t': 'a', 'n': ['a']}]}]}", "Expected textual normalized token content in witness \"A\"");
+        assertRejected("{'witnesses': [{'id': 'A', 'tokens': [{'t': 'a', 'n': ''}]}]}", "Empty token encountered in witness \"A\"");
+        assertRejected("{'witnesses': [{'id': 'A', 'tokens': ['a']}]}", "Expected token object in 'tokens' field in witness \"A\"");
+    }
+
+    @Test
+    public void skipsUnknownKeys() throws IOException {
+        final SimpleCollation collation = read("{'before': {'witnesses': [1, {'id': 'X'}]}, 'witnesses': [{'id': 'A', 'extra': [{'content': 'x'}], 'content': 'a b'}], "
+                + "'algorithm': {'name': 'gst'}, 'joined': false, 'after': [[], {}]}", 0);
+        assertEquals(1, collation.getWitnesses().size());
+        assertEquals("a b", normalized(collation.getWitnesses().get(0)));
+        assertFalse(collation.isJoined());
+    }
+
+    @Test
+    public void readsLastWitnessesArray() throws IOException {
+        final SimpleCollation collation = read("{'witnesses': [{'id': 'A', 'content': 'a'}], 'witnesses': [{'id': 'B', 'content': 'b'}, {'id': 'A', 'content': 'c'}]}", 0);
+        assertEquals("B A", collation.getWitnesses().stream().map(SimpleWitness::getSigil).collect(Collectors.joining(" ")));
+        assertEquals("c", normalized(collation.getWitnesses().get(1)));
+    }
+
+    @Test
+    public void rejectsTooLongTokens() throws IOException {
+        assertEquals(1, read("{'witnesses': [{'id': 'A', 'tokens': [{'t': 'abc'}, {'t': 'de'}]}]}", 5).getWitnesses().size());
+        try {
+            read("{'witnesses': [{'id': 'A', 'tokens': [{'t': 'abc'}, {'t': 'def'}]}]}", 5);
+            fail();
+        } catch (JsonProcessor.WitnessTooLongException e) {
+            assertEquals("Witness \"A\" exceeds 5 characters", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsTooLongContent() throws IOException {
+        // leading whitespace is not part of any token
+        assertEquals(1, read("{'witnesses': [{'id': 'A', 'content': '  abc d'}]}", 5).getWitnesses().size());
+        try {
+            read("{'witnesses': [{'id': 'A', 'content': 'abc def'}]}", 5);
+            fail();
+        } catch (JsonProcessor.WitnessTooLongException e) {
+            assertEquals("Witness \"A\" exceeds 5 characters", e.getMessage());
+        }
+    }
+
+    @Test
+    public void keepsTokenFields() throws IOException {
+        final String token = "{'t': 'Cat', 'n': 'kat', 'x': {'a': [1, 2.5, true, null, 's']}}";
+        final SimpleCollation collation = read("{'witnesses': [{'id': 'A', 'tokens': [{'t': 'Dog'}, " + token + "]}]}", 0);
+        final List<Token> tokens = collation.getWitnesses().get(0).getTokens();
+        assertEquals(object("{'t': 'Dog'}"), ((JsonProcessor.Token) tokens.get(0)).getJsonNode());
+        assertEquals(object(token), ((JsonProcessor.Token) tokens.get(1)).getJsonNode());
+
+        final JsonObject node = object(token);
+        final JsonProcessor.Token copy = new JsonProcessor.Token(collation.getWitnesses().get(0), "Cat", "kat", node);
+        assertEquals(node, copy.getJsonNode());
+    }
+
+    private static SimpleCollation read(String json, int maxWitnessLength) throws IOException {
+        return JsonProcessor.read(new ByteArrayInputStream(json(json).getBytes(StandardCharsets.UTF_8)), maxWitnessLength);
+    }
+
+    private static SimpleCollation read(String json, Executor executor) throws IOException {
+        return JsonProcessor.read(new ByteArrayInputStream(json(json).getBytes(StandardCharsets.UTF_8)), 0, executor);
+    }
+
+    /**
+     * @return an executor running each task in a thread of its own and holding back the first task until all others
+     * have finished; the numbers of the tasks are recorded in the order they finish, except for the first task, which
+     * is recorded once it is no longer held back
+     */
+    private static Executor lastFinishingFirst(int tasks, Queue<Integer> finished) {
+        final AtomicInteger submitted = new AtomicInteger();
+        final CountDownLatch othersFinished = new CountDownLatch(tasks - 1);
+        return task -> {
+            final int number = submitted.getAndIncrement();
+            final Thread thread = new Thread(() -> {
+                if (number == 0) {
+                    try {
+                        if (othersFinished.await(10, TimeUnit.SECONDS)) {
+                            finished.add(number);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    task.run();
+                } else {
+                    task.run();
+                    finished.add(number);
+                    othersFinished.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    private static void assertRejected(String json, String message) {
+        try {
+            read(json, 0);
+            fail(json);
+        } catch (IOException e) {
+            assertFalse(e.getMessage(), e instanceof JsonProcessor.WitnessTooLongException);
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static JsonObject object(String json) {
+        try (JsonReader reader = Json.createReader(new StringReader(json(json)))) {
+            return reader.readObject();
+        }
+    }
+
+    private static String normalized(SimpleWitness witness) {
+        return witness.getTokens().stream().map(t -> ((SimpleToken) t).getNormalized()).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * @return the given JSON text with single quotes replaced by double quotes, which are tedious to escape
+     */
+    private static String json(String json) {
+        return json.replace('\'', '"');
+    }
+}
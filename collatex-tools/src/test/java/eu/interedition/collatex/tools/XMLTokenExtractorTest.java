@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.interedition.collatex.tools;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class XMLTokenExtractorTest {
+
+    private static final String TEI = "<TEI xmlns='http://www.tei-c.org/ns/1.0'><text><body><p>" +
+        "<w n='1'>The</w> <w type='adj'>black</w><!-- comment --> cat <seg><w>in</w> a <w>hat</w></seg>" +
+        "</p></body></text></TEI>";
+
+    @Test
+    public void textNodes() throws XMLStreamException {
+        assertEquals("[The,  , black,  cat , in,  a , hat]", tokens("//text()", TEI));
+        assertEquals("[ ,  cat ]", tokens("//p/text()", TEI));
+    }
+
+    @Test
+    public void elements() throws XMLStreamException {
+        assertEquals("[The, black, in, hat]", tokens("//w", TEI));
+        assertEquals("[in a hat]", tokens("//seg", TEI));
+        assertEquals("[in, hat]", tokens("/TEI/text/body/p/seg/w", TEI));
+        assertEquals("[in, hat]", tokens("//seg//*", TEI));
+    }
+
+    @Test
+    public void attributePredicates() throws XMLStreamException {
+        assertEquals("[black]", tokens("//w[@type]", TEI));
+        assertEquals("[The]", tokens("//w[@n='1']", TEI));
+        assertEquals("[]", tokens("//w[@n=\"2\"]", TEI));
+    }
+
+    @Test
+    public void prefixedNames() throws Exception {
+        final String xml = "<a xmlns:x='urn:x'><x:w x:type='a'>p</x:w><w>q</w><w type='b'>r</w></a>";
+        assertEquals("[q, r]", tokens("//w", xml));
+        assertEquals("[r]", tokens("//w[@type]", xml));
+        assertEquals("[p, q, r]", tokens("/a/*", xml));
+        for (String path : new String[] { "//w", "//w[@type]" }) {
+            assertEquals(path, xpathTokens(path, xml), tokens(path, xml));
+        }
+    }
+
+    @Test
+    public void nestedElementsInDocumentOrder() throws XMLStreamException {
+        assertEquals("[inner outer, inner]", tokens("//w", "<a><w><w>inner</w> outer</w></a>"));
+    }
+
+    @Test
+    public void unsupportedPaths() {
+        assertNull(XMLTokenExtractor.compile("//w[1]"));
+        assertNull(XMLTokenExtractor.compile("//w | //seg"));
+        assertNull(XMLTokenExtractor.compile("//tei:w"));
+        assertNull(XMLTokenExtractor.compile("w"));
+    }
+
+    private static String tokens(String path, String xml) throws XMLStreamException {
+        final List<String> tokens = new ArrayList<>();
+        XMLTokenExtractor.compile(path).extract(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), tokens::add);
+        return tokens.toString();
+    }
+
+    private static String xpathTokens(String path, String xml) throws Exception {
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        final NodeList nodes = (NodeList) XPathFactory.newInstance().newXPath().evaluate(path, document, XPathConstants.NODESET);
+        final List<String> tokens = new ArrayList<>();
+        for (int nc = 0; nc < nodes.getLength(); nc++) {
+            tokens.add(nodes.item(nc).getTextContent());
+        }
+        return tokens.toString();
+    }
+}